@@ -0,0 +1,19 @@
+package com.project.andrew;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск микробенчмарков с профилировщиком GC (выводит gc.alloc.rate.norm - байт, выделенных за операцию).
+ * Принимает обычные параметры командной строки JMH, например: java -jar target/benchmarks.jar GameStep -p gridSize=40
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,34 @@
+package com.project.andrew;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запросы состава клетки
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CellBenchmark {
+
+    @Benchmark
+    public List<AbstractIslandOrganism> getOrganismPerCell(SimulationState state) {
+        return state.nextCell().getOrganismPerCell(state.nextSpeciesId());
+    }
+
+    @Benchmark
+    public Map<Class<? extends AbstractIslandOrganism>, Long> showOrganismStatistic(SimulationState state) {
+        return state.nextCell().showOrganismStatistic();
+    }
+}
@@ -0,0 +1,60 @@
+package com.project.andrew;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Один такт игры (то, что выполняет Game.makeAction) на свежем поле
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class GameStepBenchmark {
+    //  Сторона квадратного поля
+    @Param({"10", "40"})
+    public int gridSize;
+    //  Начальная плотность, в процентах от числа особей на клетке по умолчанию
+    @Param({"25", "100"})
+    public int density;
+    //  Способ выполнения такта
+    @Param({"TILED"})
+    public ExecutionMode mode;
+
+    private Game game;
+
+    @Setup(Level.Iteration)
+    public void createGame() throws Exception {
+        game = new Game(gridSize, gridSize, GameOptions.builder()
+                .executionMode(mode)
+                .pacing(false)
+                .densityPercent(density)
+                .build());
+        game.setRender(false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeGame() throws Exception {
+        game.getScheduler().close();
+    }
+
+    @Benchmark
+    public void step() throws Exception {
+        game.getScheduler().runStep();
+    }
+}
@@ -0,0 +1,41 @@
+package com.project.andrew;
+
+import com.project.andrew.interfaces.Eater;
+import com.project.andrew.interfaces.Moveable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Один вызов жизненного сервиса для очередной особи поля.
+ * Состав клеток меняется от вызова к вызову (жертвы гибнут, рождается потомство, животные уходят),
+ * поэтому итерации короткие, а поле пересоздается перед каждой из них
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LifeServiceBenchmark {
+
+    @Benchmark
+    public void eaterServiceAccept(SimulationState state) {
+        state.eaterService.accept((Eater) state.nextAnimal());
+    }
+
+    @Benchmark
+    public void reproductionServiceAccept(SimulationState state) {
+        state.reproductionService.accept(state.nextOrganism());
+    }
+
+    @Benchmark
+    public void moveableServiceAccept(SimulationState state) {
+        state.moveableService.accept((Moveable) state.nextAnimal());
+    }
+}
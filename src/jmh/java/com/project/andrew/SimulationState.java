@@ -0,0 +1,116 @@
+package com.project.andrew;
+
+import com.project.andrew.lifeServices.ConcurrencyMode;
+import com.project.andrew.lifeServices.EaterService;
+import com.project.andrew.lifeServices.MoveableService;
+import com.project.andrew.lifeServices.ReproductionService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Поле и жизненные сервисы для микробенчмарков.
+ * Сервисы настроены как в режиме TILED (без захвата особей и пауз), но перемещение - немедленное,
+ * так как в бенчмарке нет планировщика, принимающего очереди клеток.
+ * Поле пересоздается перед каждой итерацией: действия сервисов меняют состав клеток
+ */
+@State(Scope.Thread)
+public class SimulationState {
+    //  Сторона квадратного поля
+    @Param({"10", "40"})
+    public int gridSize;
+    //  Начальная плотность, в процентах от числа особей на клетке по умолчанию
+    @Param({"25", "100"})
+    public int density;
+
+    public OrganismFactory factory;
+    public Field field;
+    public EaterService eaterService;
+    public ReproductionService reproductionService;
+    public MoveableService moveableService;
+    //  Все особи поля на момент создания, в случайном порядке
+    public AbstractIslandOrganism[] organisms;
+    //  Животные поля на момент создания, в случайном порядке
+    public AbstractIslandAnimal[] animals;
+    //  Номер следующей особи (клетки) для вызова
+    private int cursor;
+    //  Номер следующего вида для запроса
+    private int speciesCursor;
+
+    @Setup(Level.Trial)
+    public void createFactory() throws Exception {
+        factory = new OrganismFactory();
+        eaterService = new EaterService(factory.getFoodProbabilityMatrix(), factory.getPreyIds());
+        eaterService.setConcurrencyMode(ConcurrencyMode.CELL_OWNERSHIP);
+        eaterService.setHuntTryPauseMillis(0);
+        reproductionService = new ReproductionService(factory.getPrototypesBySpeciesId());
+        reproductionService.setConcurrencyMode(ConcurrencyMode.CELL_OWNERSHIP);
+    }
+
+    @Setup(Level.Iteration)
+    public void createField() {
+        field = new Field(gridSize, gridSize, factory.getSpeciesCount(), () -> factory.createOrganismListForCell(density));
+        moveableService = new MoveableService(field);
+        moveableService.setConcurrencyMode(ConcurrencyMode.CELL_OWNERSHIP);
+        List<AbstractIslandOrganism> all = new ArrayList<>();
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                all.addAll(field.getCell(i, j).getOrganismList());
+            }
+        }
+        Collections.shuffle(all, new Random(42));
+        organisms = all.toArray(new AbstractIslandOrganism[0]);
+        animals = all.stream().filter(x -> x instanceof AbstractIslandAnimal).toArray(AbstractIslandAnimal[]::new);
+        cursor = 0;
+    }
+
+    /**
+     * Возвращает следующую особь (по кругу)
+     *
+     * @return
+     */
+    public AbstractIslandOrganism nextOrganism() {
+        AbstractIslandOrganism organism = organisms[cursor];
+        cursor = cursor + 1 == organisms.length ? 0 : cursor + 1;
+        return organism;
+    }
+
+    /**
+     * Возвращает следующее животное (по кругу)
+     *
+     * @return
+     */
+    public AbstractIslandAnimal nextAnimal() {
+        AbstractIslandAnimal animal = animals[cursor % animals.length];
+        cursor = cursor + 1 == organisms.length ? 0 : cursor + 1;
+        return animal;
+    }
+
+    /**
+     * Возвращает следующий номер вида (по кругу)
+     *
+     * @return
+     */
+    public int nextSpeciesId() {
+        speciesCursor = speciesCursor + 1 == factory.getSpeciesCount() ? 0 : speciesCursor + 1;
+        return speciesCursor;
+    }
+
+    /**
+     * Возвращает следующую клетку (по кругу)
+     *
+     * @return
+     */
+    public Cell nextCell() {
+        int index = cursor % (gridSize * gridSize);
+        cursor = cursor + 1 == organisms.length ? 0 : cursor + 1;
+        return field.getCell(index / gridSize, index % gridSize);
+    }
+}
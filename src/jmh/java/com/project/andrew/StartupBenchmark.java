@@ -0,0 +1,75 @@
+package com.project.andrew;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запуск: загрузка конфигурации видов и время до первого такта (создание игры на малом поле и один такт).
+ * Конфигурация разбирается из YAML (yaml) или берется из двоичного кэша (cache)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class StartupBenchmark {
+    //  Источник конфигурации видов
+    @Param({"yaml", "cache"})
+    public String source;
+
+    private Path cacheFile;
+
+    @Setup(Level.Trial)
+    public void prepareCache() throws Exception {
+        if (source.equals("cache")) {
+            cacheFile = Files.createTempFile("species", ".cache");
+            Files.delete(cacheFile);
+            //  Первая загрузка записывает кэш
+            new OrganismFactory(cacheFile);
+            System.setProperty(OrganismFactory.CACHE_PROPERTY, cacheFile.toString());
+        } else {
+            System.clearProperty(OrganismFactory.CACHE_PROPERTY);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCache() throws Exception {
+        System.clearProperty(OrganismFactory.CACHE_PROPERTY);
+        if (cacheFile != null) {
+            Files.deleteIfExists(cacheFile);
+        }
+    }
+
+    @Benchmark
+    public OrganismFactory loadConfig() throws Exception {
+        return new OrganismFactory(cacheFile);
+    }
+
+    @Benchmark
+    public Game firstStep() throws Exception {
+        Game game = new Game(10, 10, GameOptions.builder().threadCount(1).pacing(false).build());
+        game.setRender(false);
+        try {
+            game.getScheduler().runStep();
+        } finally {
+            game.getScheduler().close();
+        }
+        return game;
+    }
+}
@@ -1,5 +1,8 @@
+import com.project.andrew.BatchRunner;
 import com.project.andrew.Game;
-import com.project.andrew.Utils;
+import com.project.andrew.tracing.Tracer;
+
+import java.io.OutputStreamWriter;
 
 import java.util.Scanner;
 import java.util.regex.Pattern;
@@ -45,14 +48,36 @@ public class Main {
     }
 
     public static void main(String[] args) {
+        //  Если заданы параметры командной строки - пакетный режим без ввода с консоли
+        if (args.length > 0) {
+            try {
+                BatchRunner.parse(args).run();
+            } catch (Exception e) {
+                System.err.println(e);
+                System.exit(1);
+            }
+            return;
+        }
         System.out.println("Добро пожаловать на сумасшедший остров!");
         showInputValues();
-        Utils.showAdvancedInfo = showAdvancedInfo;
+        if (showAdvancedInfo) {
+            //  Действия особей выводятся трассировкой в отдельном потоке
+            Tracer.start(new OutputStreamWriter(System.out, System.out.charset()), Tracer.DEFAULT_CAPACITY);
+        }
         try {
             game = new Game(numRows, numCols);
             game.start(stepCount);
         } catch (Exception e) {
             System.err.println(e);
+        } finally {
+            //  Дописываем трассировку и освобождаем ее поток и при ошибке
+            if (showAdvancedInfo) {
+                try {
+                    Tracer.stop();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
 
     }
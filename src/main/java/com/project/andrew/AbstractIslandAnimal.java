@@ -2,34 +2,61 @@ package com.project.andrew;
 
 import com.project.andrew.interfaces.Eater;
 import com.project.andrew.interfaces.Moveable;
+import com.project.andrew.metrics.MetricType;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 public abstract class AbstractIslandAnimal extends AbstractIslandOrganism implements Moveable, Eater<AbstractIslandOrganism> {
-    //  Максимальная скорость перемещения (число клеток за ход)
-    @Getter
-    private int maxSpeed = 1;
+    //  Текущий уровень насыщения. Не может быть больше, чем значение foodRequirement
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private double currentSatiationLevel;
 
-    //  Число попыток охоты за ход
-    @Getter
-    private int huntTryCount = 1;
+    /**
+     * Возвращает максимальную скорость перемещения (число клеток за ход)
+     *
+     * @return
+     */
+    public int getMaxSpeed() {
+        return getSpecies().getMaxSpeed();
+    }
 
-    //  Сколько килограммов пищи нужно животному для полного насыщения
-    @Getter
-    private double foodRequirement = 1;
+    /**
+     * Возвращает число попыток охоты за ход
+     *
+     * @return
+     */
+    public int getHuntTryCount() {
+        return getSpecies().getHuntTryCount();
+    }
 
-    //  Затрата энергии (уменьшение текущего уровня насыщения ) за ход, по умолчанию
-    //  Если энергия уменьшается до 0, то животное считется умершим
-    @Getter
-    private double defaultFoodConsumption = 1;
+    /**
+     * Возвращает, сколько килограммов пищи нужно животному для полного насыщения
+     *
+     * @return
+     */
+    public double getFoodRequirement() {
+        return getSpecies().getFoodRequirement();
+    }
 
-    //  Затрата энергии (уменьшение текущего уровня насыщения ) на передвижение на клетку.
-    //  Если энергия уменьшается до 0, то животное считется умершим
-    @Getter
-    private double movementFoodConsumption = 1;
+    /**
+     * Возвращает затрату энергии за ход
+     *
+     * @return
+     */
+    public double getDefaultFoodConsumption() {
+        return getSpecies().getDefaultFoodConsumption();
+    }
 
-    //  Текущий уровень насыщения. Не может быть больше, чем значение foodRequirement
-    private double currentSatiationLevel;
+    /**
+     * Возвращает затрату энергии на передвижение на клетку
+     *
+     * @return
+     */
+    public double getMovementFoodConsumption() {
+        return getSpecies().getMovementFoodConsumption();
+    }
 
     public boolean eat(AbstractIslandOrganism prey) {
         //  Смотрим, чтобы не съел сам себя или "пустышку"
@@ -45,17 +72,29 @@ public abstract class AbstractIslandAnimal extends AbstractIslandOrganism implem
             synchronized (this.getCurrentCell()) {
                 this.getCurrentCell().removeOrganism(prey);
             }
+            this.getCurrentCell().getMetrics().record(MetricType.KILLS, prey.getSpeciesId());
             return true;
         } else {
             return false;
         }
     }
 
+    /**
+     * Съедает жертву при разрешении охоты на всей клетке за один проход (см. EaterService.eatCell):
+     * жертва сразу лишается жизни, а с клетки снимается позже, вместе с остальными съеденными (Cell.removeEaten)
+     *
+     * @param prey
+     */
+    public void consume(AbstractIslandOrganism prey) {
+        this.incSatiationLevel(prey.getWeight());
+        prey.setDead();
+    }
+
     @Override
     public void incAge() {
         super.incAge();
         //  Обычный расход энергии за ход (уменьшение уровня насыщения)
-        this.decSatiationLevel(defaultFoodConsumption);
+        this.decSatiationLevel(getSpecies().getDefaultFoodConsumption());
     }
 
     /**
@@ -70,6 +109,15 @@ public abstract class AbstractIslandAnimal extends AbstractIslandOrganism implem
         }
     }
 
+    /**
+     * Насыщение от съеденного растения из запаса клетки (см. Cell.consumePlant)
+     *
+     * @param preyWeight
+     */
+    void feed(double preyWeight) {
+        incSatiationLevel(preyWeight);
+    }
+
     /**
      * Увеличивает уровень насыщения, например после еды
      *
@@ -77,6 +125,7 @@ public abstract class AbstractIslandAnimal extends AbstractIslandOrganism implem
      */
     private void incSatiationLevel(double value) {
         this.currentSatiationLevel += value;
+        double foodRequirement = getSpecies().getFoodRequirement();
         if (this.currentSatiationLevel > foodRequirement) {
             this.currentSatiationLevel = foodRequirement;
         }
@@ -86,26 +135,52 @@ public abstract class AbstractIslandAnimal extends AbstractIslandOrganism implem
     public void init() {
         super.init();
         //  При создании новой особи предполагаем, что она частично сыта
-        this.currentSatiationLevel = this.foodRequirement * 0.75;
+        this.currentSatiationLevel = getSpecies().getFoodRequirement() * 0.75;
     }
 
     @Override
     public boolean move(Cell targetCell) {
         //  В результате перемещения уменьшается энергия
-        this.decSatiationLevel(movementFoodConsumption);
+        this.decSatiationLevel(getSpecies().getMovementFoodConsumption());
         if (isDead) {
             return false;
         }
 
-        this.getCurrentCell().removeOrganism(this);
-        //  Если в клетке назначения нет места для данной особи, то она погибает
-        if (targetCell.getOrganismPerCell(this.getClass()).size() >= getMaxNumberIndividualsInCell()) {
-            isDead = true;
-            return false;
-        } else {
-            targetCell.addOrganism(this);
-            return true;
+        //  Особь уходит с клетки живой (removeOrganism лишил бы ее жизни)
+        this.getCurrentCell().detachOrganism(this);
+        //  Проверка места и добавление - атомарно относительно других особей, идущих в ту же клетку
+        synchronized (targetCell) {
+            //  Если в клетке назначения нет места для данной особи, то она погибает
+            if (targetCell.getOrganismCount(getSpeciesId()) >= getMaxNumberIndividualsInCell()) {
+                isDead = true;
+                targetCell.getMetrics().record(MetricType.OVERCROWDING_DEATHS, getSpeciesId());
+                return false;
+            } else {
+                targetCell.addOrganism(this);
+                targetCell.getMetrics().record(MetricType.MOVES, getSpeciesId());
+                return true;
+            }
         }
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Расход энергии на переход на соседнюю клетку (без самого перехода)
+     *
+     * @return false, если особь умерла от истощения
+     */
+    public boolean spendMovementFood() {
+        this.decSatiationLevel(getSpecies().getMovementFoodConsumption());
+        return !isDead;
+    }
+
+    /**
+     * Первая часть двухфазного перемещения: особь уходит с текущей клетки и ставится в очередь клетки назначения.
+     * На клетку назначения особь попадает при приеме очереди (Cell.acceptMigrants) после окончания фазы перемещения
+     *
+     * @param targetCell
+     */
+    public void migrate(Cell targetCell) {
+        this.getCurrentCell().sendMigrant(this, targetCell);
+    }
+}
@@ -2,57 +2,35 @@ package com.project.andrew;
 
 import com.project.andrew.exceptions.OrganismlIsDieException;
 import com.project.andrew.interfaces.Lockable;
+import com.project.andrew.metrics.MetricType;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public abstract class AbstractIslandOrganism implements Lockable, Cloneable {
-    public ReentrantLock lock = new ReentrantLock();
-
-    private static long organismNumber = 0;
+    //  Состояние блокировки особи (0 - свободна, 1 - занята). Вместо объекта ReentrantLock на каждую особь - одно поле int
+    private static final AtomicIntegerFieldUpdater<AbstractIslandOrganism> LOCK_STATE =
+            AtomicIntegerFieldUpdater.newUpdater(AbstractIslandOrganism.class, "lockState");
+    private volatile int lockState = 0;
 
     //  Мертва ли особь
     protected volatile boolean isDead = false;
 
-    //  Иконка организма
-    @Getter
-    private String icon = "X";
-
-    //  Название организма (животного, растения и т.п.)
-    private String organismName = this.getClass().getSimpleName();
-
-    //  Время жизни (Через сколько ходов наступить смерть)
-    @Getter
-    private int lifeSpan = 10;
-
-    //  Вес организма
-    @Getter
-    private double weight = 10;
-
-    //  Минимальный возраст для размножения
-    @Getter
-    private int minimumReproductiveAge = 2;
-
-    //  Число потомков, получаемых в результате размножения
+    //  Свойства вида (общие для всех особей вида, назначаются прототипу фабрикой и копируются при клонировании)
     @Getter
-    private int offspringCount = 1;
+    @Setter(AccessLevel.PACKAGE)
+    private SpeciesDescriptor species;
 
-    //  Число особей данного организма на клетке при создании клетки
+    //  Уникальный номер особи (см. OrganismIdAllocator)
     @Getter
-    private int defaultNumberIndividualsInCell = 10;
-
-    //  Максимальное число особей данного организма на клетке
-    @Getter
-    private int maxNumberIndividualsInCell = 20;
-
-    //  Имя особи
-    @Getter
-    private String name;
+    private long id;
 
     //  Возраст особи. Должна умереть, если возраст превышает lifeSpan
     @Getter
+    @Setter(AccessLevel.PACKAGE)
     private volatile int age = 0;
 
     //  Местоположение особи
@@ -60,43 +38,112 @@ public abstract class AbstractIslandOrganism implements Lockable, Cloneable {
     @Setter
     private Cell currentCell;
 
+    //  Индекс особи в наборе особей своего вида на клетке (-1, если особь не на клетке)
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private int bucketIndex = -1;
+
     public AbstractIslandOrganism() {
-        this.setName();
+        this.id = OrganismIdAllocator.nextId();
     }
 
+    /**
+     * Инициализация прототипа после назначения свойств вида
+     */
     public void init() {
-        /*
-          Не допускаем, чтобы число особей данного организма при инициализации
-          привысило максимальное число
-         */
-        if (defaultNumberIndividualsInCell > maxNumberIndividualsInCell) {
-            defaultNumberIndividualsInCell = maxNumberIndividualsInCell;
-        }
+    }
+
+    /**
+     * Возвращает иконку организма
+     *
+     * @return
+     */
+    public String getIcon() {
+        return species.getIcon();
+    }
+
+    /**
+     * Возвращает время жизни (через сколько ходов наступит смерть)
+     *
+     * @return
+     */
+    public int getLifeSpan() {
+        return species.getLifeSpan();
+    }
+
+    /**
+     * Возвращает вес организма
+     *
+     * @return
+     */
+    public double getWeight() {
+        return species.getWeight();
+    }
+
+    /**
+     * Возвращает минимальный возраст для размножения
+     *
+     * @return
+     */
+    public int getMinimumReproductiveAge() {
+        return species.getMinimumReproductiveAge();
+    }
+
+    /**
+     * Возвращает число потомков, получаемых в результате размножения
+     *
+     * @return
+     */
+    public int getOffspringCount() {
+        return species.getOffspringCount();
+    }
+
+    /**
+     * Возвращает число особей данного организма на клетке при создании клетки
+     *
+     * @return
+     */
+    public int getDefaultNumberIndividualsInCell() {
+        return species.getDefaultNumberIndividualsInCell();
+    }
+
+    /**
+     * Возвращает максимальное число особей данного организма на клетке
+     *
+     * @return
+     */
+    public int getMaxNumberIndividualsInCell() {
+        return species.getMaxNumberIndividualsInCell();
+    }
+
+    /**
+     * Возвращает номер вида (-1, если свойства вида еще не назначены)
+     *
+     * @return
+     */
+    public int getSpeciesId() {
+        return species == null ? -1 : species.getSpeciesId();
     }
 
     @Override
     public AbstractIslandOrganism clone() throws CloneNotSupportedException {
         AbstractIslandOrganism organism = (AbstractIslandOrganism) super.clone();
-        organism.lock = new ReentrantLock();
+        organism.lockState = 0;
         organism.currentCell = this.currentCell;
-        organism.setName();
+        organism.bucketIndex = -1;
+        organism.id = OrganismIdAllocator.nextId();
         return organism;
     }
 
     /**
-     * Устанавливаем имя особи (по молчанию)
-     */
-    private void setName() {
-        this.name = this.organismName + "-" + (++organismNumber);
-    }
-
-    /**
-     * Устанавливаем имя особи
+     * Возвращает имя особи: название вида и номер особи. Строка строится при каждом вызове
+     * (нужна только трассировке и отладочному выводу), поэтому особь не хранит имени
      *
-     * @param name
+     * @return
      */
-    private void setName(String name) {
-        this.name = name;
+    public String getName() {
+        String organismName = species != null ? species.getOrganismName() : this.getClass().getSimpleName();
+        return organismName + "-" + id;
     }
 
     /**
@@ -104,7 +151,7 @@ public abstract class AbstractIslandOrganism implements Lockable, Cloneable {
      */
     public void incAge() {
         this.age++;
-        if (age > lifeSpan) {
+        if (age > species.getLifeSpan()) {
             isDead = true;
         }
     }
@@ -124,41 +171,37 @@ public abstract class AbstractIslandOrganism implements Lockable, Cloneable {
             }
             //  Возвращает число особей, которые должны "умереть",
             //  чтобы общее число особей данного вида на клетке не превышало MAX_NUMBER_INDIVIDUALS_IN_CELL
-            long mustDieCount = this.currentCell.getOrganismPerCell(this.getClass()).size() + list.size() - maxNumberIndividualsInCell;
+            long mustDieCount = this.currentCell.getOrganismCount(species.getSpeciesId()) + list.size() - species.getMaxNumberIndividualsInCell();
             if (mustDieCount > 0) {
                 //  Если такие есть, то они "умирают"
                 list.subList((int) (list.size() - mustDieCount), list.size()).clear();
             }
             currentCell.addOrganismList(list);
             count = list.size();
+            currentCell.getMetrics().record(MetricType.BIRTHS, species.getSpeciesId(), count);
         }
         return count;
     }
 
     @Override
     public String toString() {
-        return "AbstractIslandOrganism{" + "organismName='" + organismName + '\'' + '\n' + ", lifeSpan=" + lifeSpan + '\n' + ", weight=" + weight + '\n' + ", offspringCount=" + offspringCount + '\n' + ", defaultNumberIndividualsInCell=" + defaultNumberIndividualsInCell + '\n' + ", maxNumberIndividualsInCell=" + maxNumberIndividualsInCell + '\n' + ", name='" + name + '\'' + '\n' + ", age=" + age + '\n' + ", currentCell=(" + currentCell.getRow() + "," + currentCell.getCol() + "," + currentCell.showOrganismStatistic() + ")" + '\n' + '}';
+        return "AbstractIslandOrganism{" + "organismName='" + species.getOrganismName() + '\'' + '\n' + ", lifeSpan=" + getLifeSpan() + '\n' + ", weight=" + getWeight() + '\n' + ", offspringCount=" + getOffspringCount() + '\n' + ", defaultNumberIndividualsInCell=" + getDefaultNumberIndividualsInCell() + '\n' + ", maxNumberIndividualsInCell=" + getMaxNumberIndividualsInCell() + '\n' + ", name='" + getName() + '\'' + '\n' + ", age=" + age + '\n' + ", currentCell=(" + currentCell.getRow() + "," + currentCell.getCol() + "," + currentCell.showOrganismStatistic() + ")" + '\n' + '}';
     }
 
     @Override
     public void unlock() {
-        lock.unlock();
+        lockState = 0;
     }
 
     @Override
     public boolean tryLock() {
-        //  Специально переопределял методы блокировки.
-        // Варианты блокировки между lock и tryLock с параметром и без оного
-
-        return lock.tryLock();
-
-        /*try {
-            return (lock.tryLock(100, TimeUnit.MILLISECONDS));
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }*/
-        /*lock.lock();
-        return true;*/
+        //  Неблокирующий захват без повторного входа: особь в сервисах захватывается не более одного раза
+        return LOCK_STATE.compareAndSet(this, 0, 1);
+    }
+
+    @Override
+    public boolean isLocked() {
+        return lockState != 0;
     }
 
     /**
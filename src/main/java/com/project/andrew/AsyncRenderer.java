@@ -0,0 +1,121 @@
+package com.project.andrew;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Вывод состояния поля в отдельном потоке.
+ * Симуляция передает снимок численности (FieldSnapshot) в ячейку на один кадр и не ждет вывода.
+ * Если предыдущий кадр еще не выведен, он заменяется новым (кадр пропускается).
+ * Кадр собирается в переиспользуемый буфер и выводится одной записью
+ */
+public class AsyncRenderer implements AutoCloseable {
+    //  Иконки видов (индекс - номер вида)
+    private final String[] icons;
+    private final PrintStream out;
+    //  Кадр, ожидающий вывода
+    private final AtomicReference<FieldSnapshot> pending = new AtomicReference<>();
+    //  Буфер кадра
+    private final StringBuilder frame = new StringBuilder();
+    //  Число пропущенных кадров
+    private final LongAdder droppedFrames = new LongAdder();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public AsyncRenderer(String[] icons, PrintStream out) {
+        this.icons = icons;
+        this.out = out;
+        this.thread = new Thread(this::renderLoop, "renderer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Передает снимок на вывод (не блокирует)
+     *
+     * @param snapshot
+     */
+    public void submit(FieldSnapshot snapshot) {
+        if (pending.getAndSet(snapshot) != null) {
+            droppedFrames.increment();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Возвращает число пропущенных кадров
+     *
+     * @return
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    private void renderLoop() {
+        while (running || pending.get() != null) {
+            FieldSnapshot snapshot = pending.getAndSet(null);
+            if (snapshot == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            render(snapshot);
+            out.print(frame);
+            out.flush();
+        }
+        if (getDroppedFrames() > 0) {
+            out.println("Пропущено кадров (вывод не успевал за симуляцией): " + getDroppedFrames());
+        }
+    }
+
+    /**
+     * Собирает кадр в буфер
+     *
+     * @param snapshot
+     */
+    private void render(FieldSnapshot snapshot) {
+        frame.setLength(0);
+        if (snapshot.stepMillis() < 0) {
+            frame.append("Начальное состояние поля\n");
+        } else {
+            frame.append("Completed in ").append(snapshot.stepMillis()).append(" ms\n");
+        }
+        //  Примерная ширина столбцов
+        int width = snapshot.speciesCount() * 6 + 4;
+        frame.append("Step ").append(snapshot.step()).append('\n');
+        for (int i = 0; i < snapshot.rowCount(); i++) {
+            frame.append("| ");
+            for (int j = 0; j < snapshot.colCount(); j++) {
+                int cellStart = frame.length();
+                for (int id = 0; id < snapshot.speciesCount(); id++) {
+                    int count = snapshot.getCount(i, j, id);
+                    if (count > 0) {
+                        frame.append(icons[id]).append('-').append(count).append(' ');
+                    }
+                }
+                for (int k = frame.length() - cellStart; k < width; k++) {
+                    frame.append(' ');
+                }
+                frame.append(" | ");
+            }
+            frame.append('\n');
+        }
+        frame.append('\n');
+    }
+
+    /**
+     * Выводит последний переданный кадр и останавливает поток вывода.
+     * Если ожидание прервано, поток вывода завершается сам, а признак прерывания сохраняется
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
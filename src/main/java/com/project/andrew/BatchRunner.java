@@ -0,0 +1,291 @@
+package com.project.andrew;
+
+import com.project.andrew.columnar.ColumnarEngine;
+import com.project.andrew.columnar.ColumnarField;
+import com.project.andrew.columnar.OffHeapCellStore;
+import com.project.andrew.columnar.SpeciesTable;
+import com.project.andrew.interfaces.SimulationStatistics;
+import com.project.andrew.lifeServices.EaterService;
+import com.project.andrew.lifeServices.MoveableService;
+import com.project.andrew.lifeServices.ReproductionService;
+import com.project.andrew.tracing.Tracer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Пакетный (неинтерактивный) запуск симуляции с параметрами из командной строки.
+ * Не делает пауз и не выводит поле (если не задано --render true),
+ * по окончании выводит статистику производительности.
+ * <p>
+ * Параметры: --rows N --cols N --steps N [--seed N] [--threads N] [--render true|false] [--engine objects|columnar]
+ * [--mode tiled|platform|virtual] [--pacing true|false] [--trace FILE]
+ * [--metrics FILE.csv|FILE.json] [--checkpoint FILE] [--checkpoint-every N] [--restore FILE]
+ * [--series FILE] [--series-density true|false] [--density PERCENT] [--occupancy PERCENT]
+ * [--plants objects|stock] [--backing heap|direct|mapped] [--backing-file FILE] [--config-cache FILE]
+ * <p>
+ * С --restore размер поля и номер такта берутся из контрольной точки, а --steps - число тактов продолжения.
+ * --backing задает, где колоночное представление хранит состояние особей: в куче, в прямых буферах
+ * или в файле, отображенном в память (--backing-file - новый файл, остающийся после прогона; по умолчанию временный файл).
+ * --config-cache задает файл двоичного кэша конфигурации видов (см. SpeciesConfigCache).
+ */
+public class BatchRunner {
+    //  Число строк поля
+    private int rows = 10;
+    //  Число столбцов поля
+    private int cols = 10;
+    //  Количество тактов
+    private int steps = 10;
+    //  Зерно (null - без зерна)
+    private Long seed = null;
+    //  Число рабочих потоков
+    private int threads = Runtime.getRuntime().availableProcessors();
+    //  Выводить ли состояние поля на консоль
+    private boolean render = false;
+    //  Представление мира: objects - особь-объект, columnar - колоночное (массивы по видам)
+    private String engine = "objects";
+    //  Способ выполнения такта для объектного представления
+    private ExecutionMode mode = ExecutionMode.TILED;
+    //  Паузы между действиями особей (только для задач на особь)
+    private boolean pacing = false;
+    //  Файл трассировки действий особей (null - трассировка выключена)
+    private Path traceFile = null;
+    //  Файл метрик каждого такта (только для объектного представления)
+    private Path metricsFile = null;
+    //  Файл контрольной точки (только для объектного представления)
+    private Path checkpointFile = null;
+    //  Через сколько тактов записывать контрольную точку (0 - только по окончании)
+    private int checkpointInterval = 0;
+    //  Контрольная точка, с которой продолжается прогон (null - новый прогон)
+    private Path restoreFile = null;
+    //  Файл временного ряда численности (только для объектного представления)
+    private Path seriesFile = null;
+    //  Записывать ли в ряд численность по клеткам
+    private boolean seriesDensity = false;
+    //  Начальное число особей на клетке в процентах от числа по умолчанию
+    private int densityPercent = 100;
+    //  Доля участков поля (в процентах), заселяемых при создании
+    private int occupancyPercent = 100;
+    //  Хранить ли растения на клетках общим запасом (stock), а не особями-объектами (objects)
+    private boolean plantStocks = false;
+    //  Хранение состояния особей колоночного представления: heap - в куче, direct - прямые буферы, mapped - файл
+    private String backing = "heap";
+    //  Файл, отображаемый в память, для --backing mapped (null - временный файл)
+    private Path backingFile = null;
+    //  Файл кэша конфигурации видов (null - конфигурация разбирается при каждом запуске)
+    private Path configCacheFile = null;
+
+    /**
+     * Разбирает аргументы командной строки
+     *
+     * @param args
+     * @return
+     */
+    public static BatchRunner parse(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        for (int i = 0; i < args.length; i++) {
+            String key = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Не задано значение параметра " + key);
+            }
+            String value = args[++i];
+            switch (key) {
+                case "--rows" -> runner.rows = parsePositive(key, value);
+                case "--cols" -> runner.cols = parsePositive(key, value);
+                case "--steps" -> runner.steps = parsePositive(key, value);
+                case "--seed" -> runner.seed = Long.parseLong(value);
+                case "--threads" -> runner.threads = parsePositive(key, value);
+                case "--render" -> runner.render = Boolean.parseBoolean(value);
+                case "--pacing" -> runner.pacing = Boolean.parseBoolean(value);
+                case "--trace" -> runner.traceFile = Path.of(value);
+                case "--metrics" -> runner.metricsFile = Path.of(value);
+                case "--checkpoint" -> runner.checkpointFile = Path.of(value);
+                case "--checkpoint-every" -> runner.checkpointInterval = parsePositive(key, value);
+                case "--restore" -> runner.restoreFile = Path.of(value);
+                case "--series" -> runner.seriesFile = Path.of(value);
+                case "--series-density" -> runner.seriesDensity = Boolean.parseBoolean(value);
+                case "--density" -> runner.densityPercent = parsePositive(key, value);
+                case "--occupancy" -> runner.occupancyPercent = parsePositive(key, value);
+                case "--plants" -> runner.plantStocks = switch (value) {
+                    case "objects" -> false;
+                    case "stock" -> true;
+                    default -> throw new IllegalArgumentException("Неизвестный способ хранения растений: " + value);
+                };
+                case "--backing" -> {
+                    if (!value.equals("heap") && !value.equals("direct") && !value.equals("mapped")) {
+                        throw new IllegalArgumentException("Неизвестный способ хранения особей: " + value);
+                    }
+                    runner.backing = value;
+                }
+                case "--backing-file" -> runner.backingFile = Path.of(value);
+                case "--config-cache" -> runner.configCacheFile = Path.of(value);
+                case "--engine" -> {
+                    if (!value.equals("objects") && !value.equals("columnar")) {
+                        throw new IllegalArgumentException("Неизвестное представление мира: " + value);
+                    }
+                    runner.engine = value;
+                }
+                case "--mode" -> runner.mode = switch (value) {
+                    case "tiled" -> ExecutionMode.TILED;
+                    case "platform" -> ExecutionMode.PLATFORM_THREADS;
+                    case "virtual" -> ExecutionMode.VIRTUAL_THREADS;
+                    default -> throw new IllegalArgumentException("Неизвестный способ выполнения: " + value);
+                };
+                default -> throw new IllegalArgumentException("Неизвестный параметр " + key);
+            }
+        }
+        //  Зерно задает ход популяции только планировщику тайлов (поток случайных чисел на клетку);
+        //  задачи на особь и колоночное представление берут случайность из ThreadLocalRandom
+        if (runner.seed != null && (runner.engine.equals("columnar") || runner.mode != ExecutionMode.TILED)) {
+            throw new IllegalArgumentException("Параметр --seed поддерживается только для --engine objects --mode tiled");
+        }
+        //  Хранилище не перезаписывает чужие файлы
+        if (runner.backingFile != null && Files.exists(runner.backingFile)) {
+            throw new IllegalArgumentException("Файл --backing-file уже существует: " + runner.backingFile);
+        }
+        return runner;
+    }
+
+    private static int parsePositive(String key, String value) {
+        int result = Integer.parseInt(value);
+        if (result <= 0) {
+            throw new IllegalArgumentException("Значение параметра " + key + " должно быть положительным: " + value);
+        }
+        return result;
+    }
+
+    /**
+     * Запускает симуляцию и выводит статистику
+     *
+     * @throws Exception
+     */
+    public void run() throws Exception {
+        if (configCacheFile != null) {
+            System.setProperty(OrganismFactory.CACHE_PROPERTY, configCacheFile.toString());
+        }
+        if (traceFile != null) {
+            Tracer.start(Files.newBufferedWriter(traceFile), Tracer.DEFAULT_CAPACITY);
+        }
+        try {
+            if (engine.equals("columnar")) {
+                runColumnar();
+            } else {
+                runObjects();
+            }
+        } finally {
+            if (traceFile != null) {
+                Tracer.stop();
+                System.out.println("Трассировка записана в " + traceFile + ", отброшено событий: " + Tracer.getDroppedEvents());
+            }
+        }
+    }
+
+    private void runObjects() throws Exception {
+        long initStart = System.nanoTime();
+        //  В пакетном режиме паузы по умолчанию не нужны
+        GameOptions options = GameOptions.builder()
+                .threadCount(threads)
+                .executionMode(mode)
+                .pacing(pacing)
+                .densityPercent(densityPercent)
+                .occupancyPercent(occupancyPercent)
+                .plantStocks(plantStocks)
+                .build();
+        Game game = restoreFile == null
+                ? new Game(rows, cols, options)
+                : Game.restore(restoreFile, options);
+        long initNanos = System.nanoTime() - initStart;
+        rows = game.field.getRowCount();
+        cols = game.field.getColCount();
+        if (restoreFile != null) {
+            System.out.println("Продолжение с такта " + game.getStep() + " из " + restoreFile);
+        }
+        long organismCount = game.field.getOrganismCount();
+        long heapBytes = usedHeap();
+        game.setRender(render);
+        game.setMetricsFile(metricsFile);
+        game.setCheckpointFile(checkpointFile);
+        game.setCheckpointInterval(checkpointInterval);
+        game.setSeriesFile(seriesFile);
+        game.setSeriesDensity(seriesDensity);
+        //  Режим уже проверен при разборе параметров: зерно задано только для планировщика тайлов
+        if (game.getScheduler() instanceof StepScheduler stepScheduler) {
+            stepScheduler.setSeed(seed);
+        }
+
+        long runStart = System.nanoTime();
+        game.start(steps);
+        long runNanos = System.nanoTime() - runStart;
+
+        report(game.getScheduler(), initNanos, runNanos, organismCount, heapBytes, game.field.getOrganismCount());
+        System.out.println("Выделено участков поля: " + game.field.getAllocatedChunkCount());
+        System.out.println("Сорвано действий из-за занятых особей (" + game.getExecutionMode() + "): "
+                + "питание " + game.getDroppedActions(StepScheduler.Phase.EAT)
+                + ", размножение " + game.getDroppedActions(StepScheduler.Phase.REPRODUCE)
+                + ", перемещение " + game.getDroppedActions(StepScheduler.Phase.MOVE));
+    }
+
+    private void runColumnar() throws Exception {
+        long initStart = System.nanoTime();
+        OrganismFactory factory = new OrganismFactory();
+        SpeciesTable table = new SpeciesTable(factory);
+        OffHeapCellStore store = switch (backing) {
+            case "direct" -> OffHeapCellStore.direct(rows, cols, table, StepScheduler.DEFAULT_TILE_SIZE);
+            case "mapped" -> backingFile != null
+                    ? OffHeapCellStore.mapped(backingFile, rows, cols, table, StepScheduler.DEFAULT_TILE_SIZE)
+                    : OffHeapCellStore.mapped(rows, cols, table, StepScheduler.DEFAULT_TILE_SIZE);
+            default -> null;
+        };
+        ColumnarField field = new ColumnarField(rows, cols, table, store);
+        ColumnarEngine columnarEngine = new ColumnarEngine(field,
+                new EaterService(factory.getFoodProbabilityMatrix(), factory.getPreyIds()),
+                new ReproductionService(factory.getPrototypesBySpeciesId()),
+                new MoveableService(),
+                threads, StepScheduler.DEFAULT_TILE_SIZE);
+        long initNanos = System.nanoTime() - initStart;
+        long organismCount = field.getOrganismCount();
+        long heapBytes = usedHeap();
+
+        long runStart = System.nanoTime();
+        long finalCount = organismCount;
+        try (field; columnarEngine) {
+            for (int i = 0; i < steps && finalCount > 0; i++) {
+                columnarEngine.runStep();
+                finalCount = columnarEngine.getOrganismCount();
+            }
+        }
+        long runNanos = System.nanoTime() - runStart;
+
+        report(columnarEngine, initNanos, runNanos, organismCount, heapBytes, finalCount);
+        if (store != null) {
+            System.out.println(String.format(Locale.ROOT, "Вне кучи: %.1f MB (%s)", store.getByteSize() / 1048576.0, store));
+        }
+    }
+
+    /**
+     * Возвращает объем занятой памяти кучи после сборки мусора
+     *
+     * @return
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void report(SimulationStatistics statistics, long initNanos, long runNanos, long initialCount, long heapBytes, long finalCount) {
+        long doneSteps = statistics.getStepCount();
+        double seconds = runNanos / 1e9;
+        System.out.println("Поле " + rows + "x" + cols + " (" + engine + (engine.equals("objects") ? ", " + mode : ", " + backing) + "), потоков: " + threads + (seed == null ? "" : ", зерно: " + seed));
+        System.out.println(String.format(Locale.ROOT, "Инициализация: %.1f ms, особей: %d, куча: %.1f MB (%.0f байт/особь)",
+                initNanos / 1e6, initialCount, heapBytes / 1048576.0, initialCount == 0 ? 0.0 : (double) heapBytes / initialCount));
+        System.out.println(String.format(Locale.ROOT, "Тактов: %d за %.3f s (%.2f steps/s)", doneSteps, seconds, doneSteps / seconds));
+        System.out.println(String.format(Locale.ROOT, "Обработано особей: %d (%.0f organisms/s)", statistics.getProcessedOrganisms(), statistics.getProcessedOrganisms() / seconds));
+        for (StepScheduler.Phase phase : StepScheduler.Phase.values()) {
+            double phaseMillis = statistics.getPhaseNanos(phase) / 1e6;
+            System.out.println(String.format(Locale.ROOT, "  %-10s %10.1f ms всего, %8.2f ms/такт", phase, phaseMillis, doneSteps == 0 ? 0 : phaseMillis / doneSteps));
+        }
+        System.out.println("Особей на поле: " + finalCount);
+    }
+}
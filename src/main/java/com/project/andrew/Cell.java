@@ -1,11 +1,21 @@
 package com.project.andrew;
 
+import com.project.andrew.metrics.MetricType;
+import com.project.andrew.metrics.SimulationMetrics;
+import com.project.andrew.tracing.DeathCause;
+import com.project.andrew.tracing.Tracer;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public class Cell {
     //  Координата Y (ордината)
@@ -14,15 +24,62 @@ public class Cell {
     //  Координата X (абцисса)
     @Getter
     private int col;
-    //  Возвращает список особей на данной клетке
-    @Getter
-    private ConcurrentLinkedQueue<AbstractIslandOrganism> organismList = new ConcurrentLinkedQueue<>();
-    //private final List<AbstractIslandOrganism> organismList = new CopyOnWriteArrayList<>();
-    //private List<AbstractIslandOrganism> organismList = Collections.synchronizedList(new ArrayList<>());
+    //  Особи на данной клетке, по номерам видов (null - особей вида еще не было). Все изменения - под монитором клетки
+    private final SpeciesBucket[] buckets;
+    //  Число особей на данной клетке
+    private int organismCount = 0;
+    //  Версия состава клетки: меняется при каждом добавлении и удалении особи
+    private long version = 0;
+    //  Таблицы выбора жертв по номеру вида хищника (строятся лениво)
+    private PreySampler[] preySamplers;
+    //  Численность особей на всем поле (обновляется вместе с составом клетки)
+    private final PopulationCounter population;
+    //  Счетчики событий по видам (общие для всего поля)
+    @Getter(AccessLevel.PACKAGE)
+    private final SimulationMetrics metrics;
+    //  Особи, переходящие на эту клетку в фазе перемещения (пишут потоки любых тайлов, без монитора клетки)
+    private final ConcurrentLinkedQueue<Migrant> inbound = new ConcurrentLinkedQueue<>();
+    //  Число особей, ушедших с этой клетки (порядковый номер мигранта)
+    private int migrantSequence = 0;
+    //  Поток случайных чисел клетки на текущий такт (детерминированный режим). null - ThreadLocalRandom
+    @Setter
+    private RandomGenerator random;
+    //  Прототипы видов растений, которые хранятся общим запасом (индекс - номер вида, null - особь-объект).
+    //  null - все виды хранятся особями-объектами
+    private final AbstractIslandOrganism[] plantPrototypes;
+    //  Запасы растений по номерам видов (создаются лениво)
+    private PlantStock[] plantStocks;
+
+    /**
+     * Особь в пути на клетку: с какой клетки и каким по счету она ушла
+     */
+    private record Migrant(AbstractIslandAnimal animal, int fromRow, int fromCol, int sequence) {
+    }
+
+    //  Порядок приема мигрантов не зависит от того, в каком порядке потоки поставили их в очередь
+    private static final Comparator<Migrant> MIGRANT_ORDER = Comparator.comparingInt(Migrant::fromRow)
+            .thenComparingInt(Migrant::fromCol)
+            .thenComparingInt(Migrant::sequence);
 
-    public Cell(int row, int col) {
+    public Cell(int row, int col, int speciesCount, PopulationCounter population, SimulationMetrics metrics) {
+        this(row, col, speciesCount, population, metrics, null);
+    }
+
+    /**
+     * @param row
+     * @param col
+     * @param speciesCount
+     * @param population
+     * @param metrics
+     * @param plantPrototypes прототипы видов растений, хранимых общим запасом (индекс - номер вида), или null
+     */
+    public Cell(int row, int col, int speciesCount, PopulationCounter population, SimulationMetrics metrics, AbstractIslandOrganism[] plantPrototypes) {
         this.row = row;
         this.col = col;
+        this.buckets = new SpeciesBucket[speciesCount];
+        this.population = population;
+        this.metrics = metrics;
+        this.plantPrototypes = plantPrototypes;
     }
 
     /**
@@ -34,15 +91,140 @@ public class Cell {
         return "(" + row + "," + col + ")";
     }
 
+    /**
+     * Возвращает набор особей вида speciesId (создает пустой, если его еще нет)
+     *
+     * @param speciesId
+     * @return
+     */
+    private SpeciesBucket getBucket(int speciesId) {
+        SpeciesBucket bucket = buckets[speciesId];
+        if (bucket == null) {
+            bucket = new SpeciesBucket();
+            buckets[speciesId] = bucket;
+        }
+        return bucket;
+    }
+
+    /**
+     * Возвращает набор особей вида speciesId (null, если особей этого вида на клетке еще не было)
+     *
+     * @param speciesId
+     * @return
+     */
+    SpeciesBucket getSpeciesBucket(int speciesId) {
+        return buckets[speciesId];
+    }
+
     /**
      * Добавляет особь на клетку
      *
      * @param organism
      * @return
      */
-    protected boolean addOrganism(AbstractIslandOrganism organism) {
+    protected synchronized boolean addOrganism(AbstractIslandOrganism organism) {
+        if (isPlantStock(organism.getSpeciesId())) {
+            //  Растение такого вида становится частью запаса, объект больше не нужен
+            addPlants(organism.getSpeciesId(), organism.getAge(), 1);
+            return true;
+        }
         organism.setCurrentCell(this);
-        return organismList.add(organism);
+        getBucket(organism.getSpeciesId()).add(organism);
+        organismCount++;
+        version++;
+        population.add(organism.getSpeciesId(), 1);
+        return true;
+    }
+
+    /**
+     * Хранятся ли растения вида общим запасом (а не особями-объектами)
+     *
+     * @param speciesId
+     * @return
+     */
+    public boolean isPlantStock(int speciesId) {
+        return plantPrototypes != null && plantPrototypes[speciesId] != null;
+    }
+
+    /**
+     * Возвращает прототип вида растений, хранимых общим запасом
+     *
+     * @param speciesId
+     * @return
+     */
+    public AbstractIslandOrganism getPlantPrototype(int speciesId) {
+        return plantPrototypes[speciesId];
+    }
+
+    /**
+     * Возвращает запас растений вида (null, если растений этого вида на клетке еще не было)
+     *
+     * @param speciesId
+     * @return
+     */
+    public synchronized PlantStock getPlantStock(int speciesId) {
+        return plantStocks == null ? null : plantStocks[speciesId];
+    }
+
+    /**
+     * Добавляет в запас n растений возраста age
+     *
+     * @param speciesId
+     * @param age
+     * @param n
+     */
+    public synchronized void addPlants(int speciesId, int age, int n) {
+        if (n <= 0) {
+            return;
+        }
+        if (plantStocks == null) {
+            plantStocks = new PlantStock[buckets.length];
+        }
+        PlantStock stock = plantStocks[speciesId];
+        if (stock == null) {
+            stock = new PlantStock(plantPrototypes[speciesId].getLifeSpan());
+            plantStocks[speciesId] = stock;
+        }
+        stock.add(age, n);
+        organismCount += n;
+        version++;
+        population.add(speciesId, n);
+    }
+
+    /**
+     * Добавляет в запас родившиеся растения. Растения сверх maxNumberIndividualsInCell погибают
+     *
+     * @param speciesId
+     * @param born      число родившихся
+     * @return число выживших (поместившихся на клетке)
+     */
+    public synchronized int addPlantOffspring(int speciesId, int born) {
+        int room = plantPrototypes[speciesId].getMaxNumberIndividualsInCell() - getPlantCount(speciesId);
+        int survived = Math.max(0, Math.min(born, room));
+        addPlants(speciesId, 0, survived);
+        metrics.record(MetricType.BIRTHS, speciesId, survived);
+        return survived;
+    }
+
+    /**
+     * Животное съедает одно случайное растение из запаса
+     *
+     * @param eater
+     * @param speciesId вид растения
+     * @param random
+     * @return false, если запас пуст
+     */
+    public synchronized boolean consumePlant(AbstractIslandAnimal eater, int speciesId, RandomGenerator random) {
+        PlantStock stock = getPlantStock(speciesId);
+        if (stock == null || !stock.take(random)) {
+            return false;
+        }
+        organismCount--;
+        version++;
+        population.add(speciesId, -1);
+        eater.feed(plantPrototypes[speciesId].getWeight());
+        metrics.record(MetricType.KILLS, speciesId);
+        return true;
     }
 
     /**
@@ -50,40 +232,299 @@ public class Cell {
      *
      * @param list
      */
-    protected void addOrganismList(List<AbstractIslandOrganism> list) {
+    protected synchronized void addOrganismList(List<AbstractIslandOrganism> list) {
         list.forEach(this::addOrganism);
     }
 
     /**
-     * Удаляет особь с клетки
+     * Удаляет особь с клетки (за O(1))
      *
      * @param organism
      * @return
      */
-    protected boolean removeOrganism(AbstractIslandOrganism organism) {
+    protected synchronized boolean removeOrganism(AbstractIslandOrganism organism) {
         organism.setDead();
+        return detachOrganism(organism);
+    }
+
+    /**
+     * Снимает с клетки особей, съеденных за проход охоты по клетке (см. AbstractIslandAnimal.consume)
+     *
+     * @param eaten
+     * @return число снятых особей
+     */
+    public synchronized int removeEaten(List<AbstractIslandOrganism> eaten) {
+        int removed = 0;
+        for (AbstractIslandOrganism prey : eaten) {
+            if (detachOrganism(prey)) {
+                metrics.record(MetricType.KILLS, prey.getSpeciesId());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Убирает живую особь с клетки при переходе на другую клетку (за O(1))
+     *
+     * @param organism
+     * @return
+     */
+    protected synchronized boolean detachOrganism(AbstractIslandOrganism organism) {
         organism.setCurrentCell(null);
-        return organismList.remove(organism);
+        SpeciesBucket bucket = buckets[organism.getSpeciesId()];
+        if (bucket != null && bucket.remove(organism)) {
+            organismCount--;
+            version++;
+            population.add(organism.getSpeciesId(), -1);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает поток случайных чисел для действий особей этой клетки
+     *
+     * @return
+     */
+    public RandomGenerator getRandom() {
+        return random == null ? ThreadLocalRandom.current() : random;
+    }
+
+    /**
+     * Убирает особь с клетки и ставит ее в очередь перехода клетки назначения
+     * (очередь без блокировок, монитор клетки назначения не берется)
+     *
+     * @param animal
+     * @param targetCell
+     */
+    protected synchronized void sendMigrant(AbstractIslandAnimal animal, Cell targetCell) {
+        detachOrganism(animal);
+        metrics.record(MetricType.MOVES, animal.getSpeciesId());
+        targetCell.inbound.add(new Migrant(animal, row, col, migrantSequence++));
+    }
+
+    /**
+     * Принимает на клетку все особи из очереди перехода (в порядке клеток, с которых они ушли).
+     * Если в клетке нет места для особи ее вида (maxNumberIndividualsInCell), то она погибает
+     *
+     * @return число принятых особей
+     */
+    public synchronized int acceptMigrants() {
+        List<Migrant> migrants = new ArrayList<>();
+        Migrant migrant;
+        while ((migrant = inbound.poll()) != null) {
+            migrants.add(migrant);
+        }
+        migrants.sort(MIGRANT_ORDER);
+        int accepted = 0;
+        for (Migrant m : migrants) {
+            AbstractIslandAnimal animal = m.animal();
+            if (getOrganismCount(animal.getSpeciesId()) >= animal.getMaxNumberIndividualsInCell()) {
+                animal.setDead();
+                metrics.record(MetricType.OVERCROWDING_DEATHS, animal.getSpeciesId());
+                Tracer.death(animal, DeathCause.NO_ROOM, row, col);
+            } else {
+                addOrganism(animal);
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Есть ли особи в очереди перехода на эту клетку
+     *
+     * @return
+     */
+    public boolean hasMigrants() {
+        return !inbound.isEmpty();
     }
 
     /**
      * Обновляет состояние поля. Возраст всех особей увеличивается на единицу.
+     * Учитывает причины смерти (MetricType) умерших особей
      * Удаляет особи которые мертвы (isDead == true)
+     *
+     * @return число удаленных особей
      */
-    public void updateBeforeEvent() {
-        synchronized (organismList) {
-            for (var obj : organismList) {
+    public synchronized int updateBeforeEvent() {
+        int removedTotal = 0;
+        if (plantStocks != null) {
+            for (int speciesId = 0; speciesId < plantStocks.length; speciesId++) {
+                PlantStock stock = plantStocks[speciesId];
+                if (stock == null) {
+                    continue;
+                }
+                int died = stock.incAge();
+                if (died > 0) {
+                    metrics.record(MetricType.OLD_AGE_DEATHS, speciesId, died);
+                    organismCount -= died;
+                    version++;
+                    population.add(speciesId, -died);
+                    removedTotal += died;
+                }
+            }
+        }
+        for (int speciesId = 0; speciesId < buckets.length; speciesId++) {
+            SpeciesBucket bucket = buckets[speciesId];
+            if (bucket == null) {
+                continue;
+            }
+            int removed = 0;
+            //  Обход с конца: на место удаленной особи встает последняя, уже обработанная
+            for (int i = bucket.size() - 1; i >= 0; i--) {
+                var obj = bucket.get(i);
+                boolean wasDead = obj.isDead();
                 obj.incAge();
+                if (wasDead) {
+                    //  На клетке остаются только особи, умершие от истощения в пути (съеденные уже убраны)
+                    metrics.record(MetricType.STARVATIONS, speciesId);
+                } else if (obj.isDead()) {
+                    boolean oldAge = obj.getAge() > obj.getLifeSpan();
+                    metrics.record(oldAge ? MetricType.OLD_AGE_DEATHS : MetricType.STARVATIONS, speciesId);
+                    Tracer.death(obj, oldAge ? DeathCause.OLD_AGE : DeathCause.HUNGER, row, col);
+                }
                 if (obj.isDead()) {
-                    organismList.remove(obj);
+                    bucket.removeAt(i);
+                    removed++;
                 }
             }
+            if (removed > 0) {
+                organismCount -= removed;
+                version++;
+                population.add(speciesId, -removed);
+                removedTotal += removed;
+            }
+        }
+        return removedTotal;
+    }
+
+    /**
+     * Возвращает "снимок" списка особей на данной клетке
+     *
+     * @return
+     */
+    public synchronized List<AbstractIslandOrganism> getOrganismList() {
+        List<AbstractIslandOrganism> list = new ArrayList<>(organismCount);
+        for (SpeciesBucket bucket : buckets) {
+            if (bucket != null) {
+                bucket.copyTo(list);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Возвращает число особей на данной клетке
+     *
+     * @return
+     */
+    public synchronized int getOrganismCount() {
+        return organismCount;
+    }
+
+    /**
+     * Возвращает число особей вида speciesId на данной клетке
+     *
+     * @param speciesId
+     * @return
+     */
+    public synchronized int getOrganismCount(int speciesId) {
+        SpeciesBucket bucket = buckets[speciesId];
+        return (bucket == null ? 0 : bucket.size()) + getPlantCount(speciesId);
+    }
+
+    /**
+     * Возвращает число растений вида в запасе клетки (0, если вид хранится особями-объектами)
+     *
+     * @param speciesId
+     * @return
+     */
+    private int getPlantCount(int speciesId) {
+        PlantStock stock = plantStocks == null ? null : plantStocks[speciesId];
+        return stock == null ? 0 : stock.getCount();
+    }
+
+    /**
+     * Возвращает особь вида speciesId по ее индексу среди особей этого вида (0..getOrganismCount(speciesId)-1)
+     *
+     * @param speciesId
+     * @param index
+     * @return
+     */
+    public synchronized AbstractIslandOrganism getOrganism(int speciesId, int index) {
+        return buckets[speciesId].get(index);
+    }
+
+    /**
+     * Копирует особей вида speciesId (без выделения памяти)
+     *
+     * @param speciesId
+     * @param target    массив не меньше getOrganismCount(speciesId)
+     * @return число скопированных особей
+     */
+    public synchronized int copyOrganisms(int speciesId, AbstractIslandOrganism[] target) {
+        SpeciesBucket bucket = buckets[speciesId];
+        int size = bucket == null ? 0 : bucket.size();
+        for (int i = 0; i < size; i++) {
+            target[i] = bucket.get(i);
+        }
+        return size;
+    }
+
+    /**
+     * Возвращает актуальную для текущего состава клетки таблицу выбора жертв хищника.
+     * Вызывать под монитором клетки, вместе с последующим выбором особи
+     *
+     * @param predatorId    номер вида хищника
+     * @param preyIds       номера видов-жертв хищника
+     * @param probabilities вероятности поедания (0..100) по номерам видов
+     * @return
+     */
+    public synchronized PreySampler getPreySampler(int predatorId, int[] preyIds, int[] probabilities) {
+        if (preySamplers == null) {
+            preySamplers = new PreySampler[buckets.length];
+        }
+        PreySampler sampler = preySamplers[predatorId];
+        if (sampler == null) {
+            sampler = new PreySampler(preyIds, probabilities);
+            preySamplers[predatorId] = sampler;
+        }
+        if (!sampler.isActual(version)) {
+            sampler.rebuild(this, version);
+        }
+        return sampler;
+    }
+
+    /**
+     * Возвращает число особей каждого вида на данной клетке (индекс - номер вида)
+     *
+     * @return
+     */
+    public synchronized int[] getOrganismCountBySpecies() {
+        int[] counts = new int[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = (buckets[i] == null ? 0 : buckets[i].size()) + getPlantCount(i);
+        }
+        return counts;
+    }
+
+    /**
+     * Копирует число особей каждого вида на данной клетке в target, начиная с offset (без выделения памяти)
+     *
+     * @param target
+     * @param offset
+     */
+    public synchronized void copyOrganismCounts(int[] target, int offset) {
+        for (int i = 0; i < buckets.length; i++) {
+            target[offset + i] = (buckets[i] == null ? 0 : buckets[i].size()) + getPlantCount(i);
         }
     }
 
     @Override
     public String toString() {
-        return "Cell{" + "row=" + row + ", col=" + col + '\n' + ", organismList=" + organismList.toString() + '}';
+        return "Cell{" + "row=" + row + ", col=" + col + '\n' + ", organismList=" + getOrganismList().toString() + '}';
     }
 
     /**
@@ -91,19 +532,35 @@ public class Cell {
      *
      * @return
      */
-    public Map<Class<? extends AbstractIslandOrganism>, Long> showOrganismStatistic() {
-        final Map<Class<? extends AbstractIslandOrganism>, Long> typeCount = organismList.stream().collect(Collectors.groupingBy(AbstractIslandOrganism::getClass, Collectors.counting()));
+    public synchronized Map<Class<? extends AbstractIslandOrganism>, Long> showOrganismStatistic() {
+        final Map<Class<? extends AbstractIslandOrganism>, Long> typeCount = new HashMap<>();
+        for (SpeciesBucket bucket : buckets) {
+            if (bucket != null && bucket.size() > 0) {
+                typeCount.put(bucket.get(0).getClass(), (long) bucket.size());
+            }
+        }
+        for (int i = 0; plantStocks != null && i < plantStocks.length; i++) {
+            if (getPlantCount(i) > 0) {
+                typeCount.put(plantPrototypes[i].getClass(), (long) getPlantCount(i));
+            }
+        }
         return typeCount;
     }
 
     /**
-     * Возвращает список особей типа type на данной клетке
+     * Возвращает "снимок" списка особей вида speciesId на данной клетке
      *
-     * @param type
+     * @param speciesId
      * @return
      */
-    public List<AbstractIslandOrganism> getOrganismPerCell(Class<? extends AbstractIslandOrganism> type) {
-        return organismList.stream().filter(s -> s.getClass().equals(type)).toList();
+    public synchronized List<AbstractIslandOrganism> getOrganismPerCell(int speciesId) {
+        SpeciesBucket bucket = buckets[speciesId];
+        if (bucket == null) {
+            return List.of();
+        }
+        List<AbstractIslandOrganism> list = new ArrayList<>(bucket.size());
+        bucket.copyTo(list);
+        return list;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,243 @@
+package com.project.andrew;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Двоичная контрольная точка состояния острова: номер такта и все особи всех клеток (вид, возраст, уровень насыщения).
+ * Позволяет продолжить прерванный прогон с сохраненного такта, а не с нулевого.
+ * <p>
+ * Формат (DataOutputStream, big-endian):
+ * <pre>
+ * MAGIC, VERSION, step, rowCount, colCount, speciesCount, имена видов (UTF)
+ * для каждой непустой клетки выделенных участков: row, col, число непустых видов, затем для каждого из них:
+ *     номер вида (short), число особей, для каждой особи: возраст (int) и, для животных, уровень насыщения (double)
+ * признак конца: row = -1
+ * </pre>
+ * Пустые клетки не пишутся: размер точки зависит от числа особей, а не от размера поля.
+ * Растения из общих запасов клеток (PlantStock) пишутся так же, как особи-объекты, поэтому точку можно
+ * восстановить при любом способе хранения растений.
+ * Виды сопоставляются при чтении по имени класса, поэтому порядок видов в фабрике может отличаться.
+ * Запись идет потоком через буфер и в конце атомарно заменяет прежний файл: при сбое во время записи
+ * остается предыдущая контрольная точка.
+ */
+public final class Checkpoint {
+    //  Сигнатура файла "ISLC"
+    public static final int MAGIC = 0x49534C43;
+    public static final int VERSION = 2;
+    //  Размер буфера ввода-вывода
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Состояние острова, прочитанное из контрольной точки
+     *
+     * @param step  номер последнего выполненного такта
+     * @param field
+     */
+    public record State(int step, Field field) {
+    }
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Записывает контрольную точку (должно вызываться между тактами)
+     *
+     * @param file
+     * @param step
+     * @param field
+     * @param factory
+     * @throws IOException
+     */
+    public static void write(Path file, int step, Field field, OrganismFactory factory) throws IOException {
+        //  Имя временного файла уникально: две записи одной контрольной точки не пишут в один файл
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        int speciesCount = factory.getSpeciesCount();
+        boolean[] animal = animalSpecies(factory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(step);
+                out.writeInt(field.getRowCount());
+                out.writeInt(field.getColCount());
+                out.writeInt(speciesCount);
+                for (int id = 0; id < speciesCount; id++) {
+                    out.writeUTF(factory.getTypeBySpeciesId(id).getSimpleName());
+                }
+                for (Chunk chunk : field.getChunks()) {
+                    for (int k = 0; k < chunk.size(); k++) {
+                        Cell cell = chunk.getCell(k);
+                        if (cell.getOrganismCount() > 0) {
+                            writeCell(out, cell, animal);
+                        }
+                    }
+                }
+                out.writeInt(-1);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            //  После переноса временного файла уже нет, при ошибке записи он удаляется
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void writeCell(DataOutputStream out, Cell cell, boolean[] animal) throws IOException {
+        int nonEmpty = 0;
+        for (int id = 0; id < animal.length; id++) {
+            if (cell.getOrganismCount(id) > 0) {
+                nonEmpty++;
+            }
+        }
+        out.writeInt(cell.getRow());
+        out.writeInt(cell.getCol());
+        out.writeShort(nonEmpty);
+        for (int id = 0; id < animal.length; id++) {
+            if (cell.isPlantStock(id)) {
+                writePlantStock(out, id, cell.getPlantStock(id));
+                continue;
+            }
+            SpeciesBucket bucket = cell.getSpeciesBucket(id);
+            if (bucket == null || bucket.size() == 0) {
+                continue;
+            }
+            out.writeShort(id);
+            out.writeInt(bucket.size());
+            //  Особи пишутся в порядке набора: после восстановления порядок (и ход зернового прогона) тот же
+            for (int k = 0; k < bucket.size(); k++) {
+                AbstractIslandOrganism organism = bucket.get(k);
+                out.writeInt(organism.getAge());
+                if (animal[id]) {
+                    out.writeDouble(((AbstractIslandAnimal) organism).getCurrentSatiationLevel());
+                }
+            }
+        }
+    }
+
+    /**
+     * Пишет запас растений вида как особей: возраст каждого растения
+     *
+     * @param out
+     * @param speciesId
+     * @param stock
+     * @throws IOException
+     */
+    private static void writePlantStock(DataOutputStream out, int speciesId, PlantStock stock) throws IOException {
+        if (stock == null || stock.getCount() == 0) {
+            return;
+        }
+        out.writeShort(speciesId);
+        out.writeInt(stock.getCount());
+        for (int age = 0; age <= stock.getMaxAge(); age++) {
+            for (int n = 0; n < stock.getCount(age); n++) {
+                out.writeInt(age);
+            }
+        }
+    }
+
+    /**
+     * Читает контрольную точку и создает по ней новое поле
+     *
+     * @param file
+     * @param factory
+     * @return
+     * @throws IOException
+     */
+    public static State read(Path file, OrganismFactory factory) throws IOException {
+        return read(file, factory, false);
+    }
+
+    /**
+     * Читает контрольную точку и создает по ней новое поле
+     *
+     * @param file
+     * @param factory
+     * @param plantStocks хранить ли растения на клетках общим запасом
+     * @return
+     * @throws IOException
+     */
+    public static State read(Path file, OrganismFactory factory, boolean plantStocks) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Файл не является контрольной точкой: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия контрольной точки: " + version);
+            }
+            int step = in.readInt();
+            int rowCount = in.readInt();
+            int colCount = in.readInt();
+            int fileSpeciesCount = in.readInt();
+            //  Номер вида в файле -> номер вида в фабрике
+            int[] speciesIds = new int[fileSpeciesCount];
+            for (int k = 0; k < fileSpeciesCount; k++) {
+                speciesIds[k] = findSpecies(factory, in.readUTF());
+            }
+            boolean[] animal = animalSpecies(factory);
+            Field field = new Field(rowCount, colCount, factory.getSpeciesCount(), FieldOptions.builder()
+                    .plantPrototypes(plantStocks ? factory.getPlantPrototypes() : null)
+                    .build());
+            int row;
+            while ((row = in.readInt()) >= 0) {
+                int col = in.readInt();
+                if (row >= rowCount || col < 0 || col >= colCount) {
+                    throw new IOException("Клетка (" + row + "," + col + ") вне поля " + rowCount + "x" + colCount);
+                }
+                readCell(in, field.getCell(row, col), factory, speciesIds, animal);
+            }
+            return new State(step, field);
+        }
+    }
+
+    private static void readCell(DataInputStream in, Cell cell, OrganismFactory factory, int[] speciesIds, boolean[] animal) throws IOException {
+        int nonEmpty = in.readShort();
+        for (int k = 0; k < nonEmpty; k++) {
+            int id = speciesIds[in.readShort()];
+            int count = in.readInt();
+            AbstractIslandOrganism prototype = factory.getPrototypeBySpeciesId(id);
+            if (cell.isPlantStock(id)) {
+                for (int n = 0; n < count; n++) {
+                    cell.addPlants(id, in.readInt(), 1);
+                }
+                continue;
+            }
+            for (int n = 0; n < count; n++) {
+                AbstractIslandOrganism organism;
+                try {
+                    organism = prototype.clone();
+                } catch (CloneNotSupportedException e) {
+                    throw new IOException("Не удалось создать особь вида " + prototype.getClass().getSimpleName(), e);
+                }
+                organism.setAge(in.readInt());
+                if (animal[id]) {
+                    ((AbstractIslandAnimal) organism).setCurrentSatiationLevel(in.readDouble());
+                }
+                cell.addOrganism(organism);
+            }
+        }
+    }
+
+    private static int findSpecies(OrganismFactory factory, String name) throws IOException {
+        for (int id = 0; id < factory.getSpeciesCount(); id++) {
+            if (factory.getTypeBySpeciesId(id).getSimpleName().equals(name)) {
+                return id;
+            }
+        }
+        throw new IOException("В контрольной точке неизвестный вид: " + name);
+    }
+
+    private static boolean[] animalSpecies(OrganismFactory factory) {
+        boolean[] animal = new boolean[factory.getSpeciesCount()];
+        for (int id = 0; id < animal.length; id++) {
+            animal[id] = factory.getPrototypeBySpeciesId(id) instanceof AbstractIslandAnimal;
+        }
+        return animal;
+    }
+}
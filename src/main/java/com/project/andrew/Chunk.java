@@ -0,0 +1,81 @@
+package com.project.andrew;
+
+import com.project.andrew.metrics.SimulationMetrics;
+import lombok.Getter;
+
+/**
+ * Участок поля [rowFrom, rowTo) x [colFrom, colTo) - единица выделения памяти под клетки.
+ * Создается полем при первом обращении к одной из его клеток и освобождается, когда на нем не остается особей.
+ * Планировщик такта обрабатывает участок как тайл: внутри фазы участок обрабатывается одним потоком
+ */
+public class Chunk {
+    @Getter
+    private final int rowFrom;
+    @Getter
+    private final int rowTo;
+    @Getter
+    private final int colFrom;
+    @Getter
+    private final int colTo;
+    //  Клетки участка построчно
+    private final Cell[] cells;
+
+    Chunk(int rowFrom, int rowTo, int colFrom, int colTo, int speciesCount, PopulationCounter population, SimulationMetrics metrics,
+          AbstractIslandOrganism[] plantPrototypes) {
+        this.rowFrom = rowFrom;
+        this.rowTo = rowTo;
+        this.colFrom = colFrom;
+        this.colTo = colTo;
+        int width = colTo - colFrom;
+        cells = new Cell[(rowTo - rowFrom) * width];
+        for (int i = rowFrom; i < rowTo; i++) {
+            for (int j = colFrom; j < colTo; j++) {
+                cells[(i - rowFrom) * width + (j - colFrom)] = new Cell(i, j, speciesCount, population, metrics, plantPrototypes);
+            }
+        }
+    }
+
+    /**
+     * Возвращает клетку участка по координатам поля
+     *
+     * @param row
+     * @param col
+     * @return
+     */
+    public Cell getCell(int row, int col) {
+        return cells[(row - rowFrom) * (colTo - colFrom) + (col - colFrom)];
+    }
+
+    /**
+     * Возвращает число клеток участка
+     *
+     * @return
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Возвращает клетку участка по ее номеру (построчно)
+     *
+     * @param index
+     * @return
+     */
+    public Cell getCell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Пуст ли участок: нет особей на клетках и в очередях перехода
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        for (Cell cell : cells) {
+            if (cell.getOrganismCount() > 0 || cell.hasMigrants()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
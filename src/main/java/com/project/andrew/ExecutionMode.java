@@ -0,0 +1,20 @@
+package com.project.andrew;
+
+/**
+ * Способ выполнения такта
+ */
+public enum ExecutionMode {
+    /**
+     * Фазы на тайлах поля в общем work-stealing пуле, клетка принадлежит одному потоку (StepScheduler)
+     */
+    TILED,
+    /**
+     * Задача на каждую особь в пуле платформенных потоков, особи захватываются через tryLock (OrganismTaskScheduler)
+     */
+    PLATFORM_THREADS,
+    /**
+     * Задача на каждую особь, каждая - в своем виртуальном потоке (OrganismTaskScheduler).
+     * Блокирующие паузы и ожидания не занимают потоки-носители
+     */
+    VIRTUAL_THREADS
+}
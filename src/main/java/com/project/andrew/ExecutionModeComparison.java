@@ -0,0 +1,59 @@
+package com.project.andrew;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Сравнение выполнения задач на особь в пуле платформенных потоков и в виртуальных потоках
+ * на полях нескольких размеров (семантика такта одинаковая, меняется только исполнитель).
+ * <p>
+ * Параметры: [--sizes 5,10,20] [--steps N] [--pacing true|false]
+ */
+public class ExecutionModeComparison {
+    //  Стороны квадратных полей
+    private int[] sizes = {5, 10, 20};
+    //  Количество тактов на каждый прогон
+    private int steps = 3;
+    //  Паузы между действиями особей (сон и ожидания - то, на чем выигрывают виртуальные потоки)
+    private boolean pacing = true;
+
+    public static void main(String[] args) throws Exception {
+        ExecutionModeComparison comparison = new ExecutionModeComparison();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes" -> comparison.sizes = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--steps" -> comparison.steps = Integer.parseInt(args[i + 1]);
+                case "--pacing" -> comparison.pacing = Boolean.parseBoolean(args[i + 1]);
+                default -> throw new IllegalArgumentException("Неизвестный параметр " + args[i]);
+            }
+        }
+        comparison.run();
+    }
+
+    /**
+     * Выполняет прогоны и выводит таблицу результатов
+     *
+     * @throws Exception
+     */
+    public void run() throws Exception {
+        System.out.println("Тактов: " + steps + ", паузы: " + pacing);
+        System.out.println(String.format(Locale.ROOT, "%-8s %-18s %12s %14s %10s", "Поле", "Режим", "ms/такт", "особей/с", "сорвано"));
+        for (int size : sizes) {
+            for (ExecutionMode mode : new ExecutionMode[]{ExecutionMode.PLATFORM_THREADS, ExecutionMode.VIRTUAL_THREADS}) {
+                Game game = new Game(size, size, GameOptions.builder().executionMode(mode).pacing(pacing).build());
+                game.setRender(false);
+                long startTime = System.nanoTime();
+                game.start(steps);
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                long doneSteps = game.getScheduler().getStepCount();
+                long dropped = 0;
+                for (StepScheduler.Phase phase : StepScheduler.Phase.values()) {
+                    dropped += game.getDroppedActions(phase);
+                }
+                System.out.println(String.format(Locale.ROOT, "%-8s %-18s %12.1f %14.0f %10d", size + "x" + size, mode,
+                        doneSteps == 0 ? 0.0 : seconds * 1000 / doneSteps,
+                        game.getScheduler().getProcessedOrganisms() / seconds, dropped));
+            }
+        }
+    }
+}
@@ -1,69 +1,266 @@
 package com.project.andrew;
 
+import com.project.andrew.jfr.SweepEvent;
+import com.project.andrew.metrics.SimulationMetrics;
 import lombok.Getter;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Supplier;
 
+/**
+ * Поле острова. Клетки сгруппированы в участки (Chunk) размером chunkSize x chunkSize:
+ * память выделяется только под участки, на которых есть особи. Участок создается при первом обращении к его клетке
+ * (например, при переходе особи на пустой участок) и освобождается при обновлении поля, если на нем не осталось особей.
+ * Поэтому размер поля ограничен не кучей, а числом особей на нем
+ */
 public class Field {
+    //  Размер стороны участка (в клетках) по умолчанию
+    public static final int DEFAULT_CHUNK_SIZE = StepScheduler.DEFAULT_TILE_SIZE;
+
     //  Число строк на поле
     @Getter
     private int rowCount;
     //  Число столбцов на поле
     @Getter
     private int colCount;
-    private Cell[][] grid;
+    //  Размер стороны участка
+    @Getter
+    private final int chunkSize;
+    //  Число участков по вертикали и горизонтали
+    private final int chunkRowCount;
+    private final int chunkColCount;
+    //  Участки построчно (null - участок не выделен)
+    private final AtomicReferenceArray<Chunk> chunks;
+    //  Выделенные участки по номерам (по возрастанию): обход не просматривает невыделенные участки
+    private final ConcurrentSkipListMap<Integer, Chunk> allocated = new ConcurrentSkipListMap<>();
+    //  Число выделенных участков
+    private final AtomicInteger allocatedChunks = new AtomicInteger();
+    private final int speciesCount;
+    //  Прототипы видов растений, хранимых общим запасом (см. PlantStock), или null
+    private final AbstractIslandOrganism[] plantPrototypes;
+    //  Численность особей на поле по видам
+    @Getter
+    private final PopulationCounter population;
+    //  Счетчики событий по видам
+    @Getter
+    private final SimulationMetrics metrics;
+
+    /**
+     * Создает поле без особей (участки не выделены)
+     *
+     * @param m
+     * @param n
+     * @param speciesCount
+     */
+    public Field(int m, int n, int speciesCount) {
+        this(m, n, speciesCount, FieldOptions.DEFAULT);
+    }
 
-    public Field(int m, int n, Supplier<List<AbstractIslandOrganism>> func) {
+    /**
+     * Создает поле без особей (участки не выделены)
+     *
+     * @param m
+     * @param n
+     * @param speciesCount
+     * @param options      размер участка и способ хранения растений
+     */
+    public Field(int m, int n, int speciesCount, FieldOptions options) {
+        int chunkSize = options.getChunkSize();
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер участка должен быть положительным: " + chunkSize);
+        }
         rowCount = m;
         colCount = n;
-        grid = new Cell[m][n];
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                grid[i][j] = new Cell(i, j);
+        this.chunkSize = chunkSize;
+        this.speciesCount = speciesCount;
+        this.plantPrototypes = options.getPlantPrototypes();
+        chunkRowCount = (m + chunkSize - 1) / chunkSize;
+        chunkColCount = (n + chunkSize - 1) / chunkSize;
+        chunks = new AtomicReferenceArray<>(Math.multiplyExact(chunkRowCount, chunkColCount));
+        population = new PopulationCounter(speciesCount);
+        metrics = new SimulationMetrics(speciesCount);
+    }
+
+    /**
+     * Создает поле и заполняет все клетки особями
+     *
+     * @param m
+     * @param n
+     * @param speciesCount
+     * @param func         особи для очередной клетки
+     */
+    public Field(int m, int n, int speciesCount, Supplier<List<AbstractIslandOrganism>> func) {
+        this(m, n, speciesCount, func, FieldOptions.DEFAULT);
+    }
+
+    /**
+     * Создает поле и заполняет особями клетки участков, заселяемых по options.occupancyPercent
+     *
+     * @param m
+     * @param n
+     * @param speciesCount
+     * @param func         особи для очередной клетки
+     * @param options
+     */
+    public Field(int m, int n, int speciesCount, Supplier<List<AbstractIslandOrganism>> func, FieldOptions options) {
+        this(m, n, speciesCount, options);
+        int occupancyPercent = options.getOccupancyPercent();
+        for (int index = 0; index < chunks.length(); index++) {
+            if (occupancyPercent < 100 && new SplittableRandom(index).nextInt(100) >= occupancyPercent) {
+                continue;
+            }
+            Chunk chunk = getChunk(index);
+            for (int k = 0; k < chunk.size(); k++) {
                 // Инициализация поля. Заполнение ячеек (предустановка) организмами
-                grid[i][j].addOrganismList(func.get());
+                chunk.getCell(k).addOrganismList(func.get());
             }
         }
     }
 
     /**
-     * Возвращает клетку на поле
+     * Хранятся ли растения на клетках общим запасом (PlantStock)
+     *
+     * @return
+     */
+    public boolean hasPlantStocks() {
+        return plantPrototypes != null;
+    }
+
+    /**
+     * Возвращает клетку на поле (выделяет участок клетки, если он еще не выделен)
      *
      * @param row
      * @param col
      * @return
      */
     public Cell getCell(int row, int col) {
-        return grid[row][col];
+        return getChunk((row / chunkSize) * chunkColCount + col / chunkSize).getCell(row, col);
+    }
+
+    /**
+     * Возвращает клетку на поле или null, если ее участок не выделен (на клетке нет особей)
+     *
+     * @param row
+     * @param col
+     * @return
+     */
+    public Cell findCell(int row, int col) {
+        Chunk chunk = chunks.get((row / chunkSize) * chunkColCount + col / chunkSize);
+        return chunk == null ? null : chunk.getCell(row, col);
+    }
+
+    /**
+     * Возвращает участок по номеру, выделяя его при необходимости (может вызываться из любого потока)
+     *
+     * @param index
+     * @return
+     */
+    private Chunk getChunk(int index) {
+        Chunk chunk = chunks.get(index);
+        if (chunk != null) {
+            return chunk;
+        }
+        int rowFrom = (index / chunkColCount) * chunkSize;
+        int colFrom = (index % chunkColCount) * chunkSize;
+        Chunk created = new Chunk(rowFrom, Math.min(rowFrom + chunkSize, rowCount),
+                colFrom, Math.min(colFrom + chunkSize, colCount), speciesCount, population, metrics, plantPrototypes);
+        //  Если участок одновременно выделил другой поток, используется его участок
+        chunk = chunks.compareAndExchange(index, null, created);
+        if (chunk != null) {
+            return chunk;
+        }
+        allocated.put(index, created);
+        allocatedChunks.incrementAndGet();
+        return created;
+    }
+
+    /**
+     * Возвращает выделенные участки (построчно)
+     *
+     * @return
+     */
+    public List<Chunk> getChunks() {
+        List<Chunk> list = new ArrayList<>(allocatedChunks.get());
+        list.addAll(allocated.values());
+        return list;
+    }
+
+    /**
+     * Возвращает число выделенных участков
+     *
+     * @return
+     */
+    public int getAllocatedChunkCount() {
+        return allocatedChunks.get();
+    }
+
+    /**
+     * Освобождает участок, если на нем не осталось особей.
+     * Вызывается только при обновлении поля, когда к клеткам участка не обращаются другие потоки
+     *
+     * @param chunk
+     * @return true, если участок освобожден
+     */
+    boolean releaseIfEmpty(Chunk chunk) {
+        if (!chunk.isEmpty()) {
+            return false;
+        }
+        int index = (chunk.getRowFrom() / chunkSize) * chunkColCount + chunk.getColFrom() / chunkSize;
+        if (chunks.compareAndSet(index, chunk, null)) {
+            //  Участок мог быть уже выделен заново другим потоком: удаляем только освобожденный
+            allocated.remove(index, chunk);
+            allocatedChunks.decrementAndGet();
+            return true;
+        }
+        return false;
     }
 
     /**
      * Обновляет состояние поля (Должно вызывается после такта)
      */
     protected void updateBeforeEvent() {
-        synchronized (grid) {
-            for (int i = 0; i < rowCount; i++) {
-                for (int j = 0; j < colCount; j++) {
-                    getCell(i, j).updateBeforeEvent();
+        SweepEvent event = new SweepEvent();
+        event.begin();
+        int removed = 0;
+        synchronized (chunks) {
+            for (Chunk chunk : getChunks()) {
+                for (int k = 0; k < chunk.size(); k++) {
+                    removed += chunk.getCell(k).updateBeforeEvent();
                 }
+                releaseIfEmpty(chunk);
             }
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rowTo = rowCount;
+            event.colTo = colCount;
+            event.removed = removed;
+            event.commit();
+        }
     }
 
     /**
-     * Возвращает число особей на поле
+     * Возвращает число особей на поле (за O(1), по счетчикам численности)
      *
      * @return
      */
     public int getOrganismCount() {
-        int numOrganism = 0;
-        for (int i = 0; i < getRowCount(); i++) {
-            for (int j = 0; j < getColCount(); j++) {
-                numOrganism += getCell(i, j).getOrganismList().size();
-            }
-        }
-        return numOrganism;
+        return (int) population.getCount();
+    }
+
+    /**
+     * Возвращает число особей вида на поле (за O(1))
+     *
+     * @param speciesId
+     * @return
+     */
+    public long getOrganismCount(int speciesId) {
+        return population.getCount(speciesId);
     }
 
 }
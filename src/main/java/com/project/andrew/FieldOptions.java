@@ -0,0 +1,27 @@
+package com.project.andrew;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Параметры создания поля (см. Field). Не заданные параметры имеют значения по умолчанию
+ */
+@Getter
+@Builder(toBuilder = true)
+public final class FieldOptions {
+    //  Параметры по умолчанию
+    public static final FieldOptions DEFAULT = FieldOptions.builder().build();
+
+    //  Размер стороны участка (в клетках)
+    @Builder.Default
+    private final int chunkSize = Field.DEFAULT_CHUNK_SIZE;
+
+    //  Доля участков (в процентах), заселяемых при создании поля. Выбор участков зависит только от их номеров,
+    //  остальные участки не выделяются. Используется только при заполнении поля особями
+    @Builder.Default
+    private final int occupancyPercent = 100;
+
+    //  Прототипы видов растений, хранимых на клетках общим запасом (индекс - номер вида),
+    //  null - все виды хранятся особями-объектами
+    private final AbstractIslandOrganism[] plantPrototypes;
+}
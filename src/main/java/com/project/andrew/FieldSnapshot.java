@@ -0,0 +1,97 @@
+package com.project.andrew;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Неизменяемый "снимок" численности особей на поле после такта: число особей каждого вида на каждой клетке.
+ * Снимается в потоке симуляции и передается на вывод в другой поток (AsyncRenderer).
+ * Численность хранится только для выделенных участков поля (клетки остальных пусты),
+ * поэтому размер снимка пропорционален заселенной части поля, а не его площади
+ *
+ * @param step         номер такта (0 - начальное состояние)
+ * @param stepMillis   длительность такта (мс), -1 для начального состояния
+ * @param rowCount
+ * @param colCount
+ * @param speciesCount
+ * @param chunkSize    размер стороны участка поля
+ * @param chunkIndexes номера выделенных участков (построчно, по возрастанию)
+ * @param chunkCounts  численность на клетках участка chunkIndexes[k]: индекс (номер клетки участка * speciesCount + speciesId),
+ *                     клетки участка построчно. Не изменяется после создания
+ */
+public record FieldSnapshot(int step, long stepMillis, int rowCount, int colCount, int speciesCount,
+                            int chunkSize, int[] chunkIndexes, int[][] chunkCounts) {
+
+    /**
+     * Снимает численность особей с клеток выделенных участков поля
+     *
+     * @param field
+     * @param speciesCount
+     * @param step
+     * @param stepMillis
+     * @return
+     */
+    public static FieldSnapshot of(Field field, int speciesCount, int step, long stepMillis) {
+        int chunkSize = field.getChunkSize();
+        int chunkColCount = (field.getColCount() + chunkSize - 1) / chunkSize;
+        //  Участки идут построчно: номера участков возрастают
+        List<Chunk> chunks = field.getChunks();
+        int[] chunkIndexes = new int[chunks.size()];
+        int[][] chunkCounts = new int[chunks.size()][];
+        for (int n = 0; n < chunks.size(); n++) {
+            Chunk chunk = chunks.get(n);
+            chunkIndexes[n] = (chunk.getRowFrom() / chunkSize) * chunkColCount + chunk.getColFrom() / chunkSize;
+            int[] counts = new int[chunk.size() * speciesCount];
+            for (int k = 0; k < chunk.size(); k++) {
+                chunk.getCell(k).copyOrganismCounts(counts, k * speciesCount);
+            }
+            chunkCounts[n] = counts;
+        }
+        return new FieldSnapshot(step, stepMillis, field.getRowCount(), field.getColCount(), speciesCount,
+                chunkSize, chunkIndexes, chunkCounts);
+    }
+
+    /**
+     * Возвращает число особей вида на клетке
+     *
+     * @param row
+     * @param col
+     * @param speciesId
+     * @return
+     */
+    public int getCount(int row, int col, int speciesId) {
+        int chunkColCount = (colCount + chunkSize - 1) / chunkSize;
+        int n = Arrays.binarySearch(chunkIndexes, (row / chunkSize) * chunkColCount + col / chunkSize);
+        if (n < 0) {
+            return 0;
+        }
+        int colFrom = col / chunkSize * chunkSize;
+        int width = Math.min(colFrom + chunkSize, colCount) - colFrom;
+        int cell = (row % chunkSize) * width + (col - colFrom);
+        return chunkCounts[n][cell * speciesCount + speciesId];
+    }
+
+    /**
+     * Копирует численность вида на всех клетках поля (построчно, нули на клетках невыделенных участков)
+     *
+     * @param speciesId
+     * @param target    массив не меньше offset + rowCount * colCount
+     * @param offset
+     */
+    public void copySpeciesCounts(int speciesId, int[] target, int offset) {
+        Arrays.fill(target, offset, offset + rowCount * colCount, 0);
+        int chunkColCount = (colCount + chunkSize - 1) / chunkSize;
+        for (int n = 0; n < chunkIndexes.length; n++) {
+            int rowFrom = (chunkIndexes[n] / chunkColCount) * chunkSize;
+            int colFrom = (chunkIndexes[n] % chunkColCount) * chunkSize;
+            int width = Math.min(colFrom + chunkSize, colCount) - colFrom;
+            int[] counts = chunkCounts[n];
+            int cellCount = counts.length / speciesCount;
+            for (int k = 0; k < cellCount; k++) {
+                int row = rowFrom + k / width;
+                int col = colFrom + k % width;
+                target[offset + row * colCount + col] = counts[k * speciesCount + speciesId];
+            }
+        }
+    }
+}
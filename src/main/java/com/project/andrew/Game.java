@@ -1,22 +1,32 @@
 package com.project.andrew;
 
+import com.project.andrew.interfaces.StepExecutor;
+import com.project.andrew.jfr.StepEvent;
+import com.project.andrew.lifeServices.ConcurrencyMode;
 import com.project.andrew.lifeServices.EaterService;
 import com.project.andrew.lifeServices.MoveableService;
 import com.project.andrew.lifeServices.ReproductionService;
-import com.project.andrew.interfaces.Eater;
-import com.project.andrew.interfaces.Moveable;
+import com.project.andrew.metrics.MetricsRecorder;
+import com.project.andrew.metrics.PopulationSeriesWriter;
+
+import lombok.Getter;
+import lombok.Setter;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.*;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Game {
+    //  Размер пула платформенных потоков для задач на каждую особь
+    private static final int PLATFORM_POOL_SIZE = 600;
 
+    @Getter
     private int step = 0;
+    //  Продолжается ли прогон с контрольной точки (временной ряд тогда дописывается, а не пишется заново)
+    private boolean restored = false;
     private int rowCount;
     private int colCount;
 
@@ -26,159 +36,302 @@ public class Game {
     private EaterService eaterService;
     private MoveableService moveableService;
     private ReproductionService reproductionService;
+    //  Способ выполнения такта
+    @Getter
+    private final ExecutionMode executionMode;
+    //  Планировщик такта
+    @Getter
+    private StepExecutor scheduler;
+    //  Выводить ли состояние поля и время такта на консоль (false - пакетный режим без вывода)
+    @Setter
+    private boolean render = true;
+    //  Вывод состояния поля в отдельном потоке (создается при запуске игры, если включен вывод)
+    private AsyncRenderer renderer;
+    //  Файл метрик каждого такта (.csv или .json), null - метрики не записываются
+    @Setter
+    private Path metricsFile;
+    //  Файл контрольной точки (null - контрольные точки не записываются)
+    @Setter
+    private Path checkpointFile;
+    //  Через сколько тактов записывать контрольную точку (0 - только по окончании игры)
+    @Setter
+    private int checkpointInterval = 0;
+    //  Файл временного ряда численности (null - ряд не записывается)
+    @Setter
+    private Path seriesFile;
+    //  Записывать ли в ряд численность по клеткам
+    @Setter
+    private boolean seriesDensity = false;
 
-    public Game(int rowCount, int colCount) throws IOException, URISyntaxException, ClassNotFoundException {
-        this.rowCount = rowCount;
-        this.colCount = colCount;
-        field = new Field(rowCount, colCount, factory::createOrganismListForCell);
-        //  Инициализация "жизненных" сервисов
-        eaterService = new EaterService(factory.getFoodConsumptionProbability());
-        moveableService = new MoveableService(field);
-        reproductionService = new ReproductionService(factory.getPrototypes());
+    /**
+     * Источник начального состояния поля (создается после инициализации фабрики)
+     */
+    @FunctionalInterface
+    private interface StateSource {
+        Checkpoint.State create(OrganismFactory factory) throws IOException;
     }
 
-    private int getStep() {
-        return step;
+    public Game(int rowCount, int colCount) throws IOException, URISyntaxException, ClassNotFoundException {
+        this(rowCount, colCount, GameOptions.builder().build());
     }
 
     /**
-     * Увеличивает такт ("год жизни")
+     * @param rowCount
+     * @param colCount
+     * @param options  способ выполнения такта, начальное заселение поля и способ хранения растений
      */
-    private void incStep() {
-        this.step++;
-        field.updateBeforeEvent();
+    public Game(int rowCount, int colCount, GameOptions options) throws IOException, URISyntaxException, ClassNotFoundException {
+        this(options, factory -> new Checkpoint.State(0,
+                new Field(rowCount, colCount, factory.getSpeciesCount(), () -> factory.createOrganismListForCell(options.getDensityPercent()),
+                        FieldOptions.builder()
+                                .occupancyPercent(options.getOccupancyPercent())
+                                .plantPrototypes(options.isPlantStocks() ? factory.getPlantPrototypes() : null)
+                                .build())));
     }
 
-    /**
-     * Отображает содержимое клеток на поле
-     */
-    private void showState() {
-        //  Примерная ширина столбцов
-        int width = factory.getPrototypes().size() * 6 + 4;
-        System.out.println("Step " + step);
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < field.getRowCount(); i++) {
-            stringBuilder.append("| ");
-            for (int j = 0; j < field.getColCount(); j++) {
-                field.getCell(i, j).showOrganismStatistic().forEach((type, count) -> {
-                    AbstractIslandOrganism obj = factory.getPrototypeByType(type);
-                    stringBuilder.append(obj.getIcon() + "-" + count + " ");
-                });
-                System.out.print(String.format("%-" + width + "s", stringBuilder.toString()) + " | ");
-                stringBuilder.setLength(0);
+    private Game(GameOptions options, StateSource source) throws IOException, URISyntaxException, ClassNotFoundException {
+        this.executionMode = options.getExecutionMode();
+        int threadCount = options.getThreadCount();
+        boolean pacing = options.isPacing();
+        Checkpoint.State state = source.create(factory);
+        field = state.field();
+        step = state.step();
+        rowCount = field.getRowCount();
+        colCount = field.getColCount();
+        //  Инициализация "жизненных" сервисов
+        eaterService = new EaterService(factory.getFoodProbabilityMatrix(), factory.getPreyIds());
+        moveableService = new MoveableService(field);
+        reproductionService = new ReproductionService(factory.getPrototypesBySpeciesId());
+        switch (executionMode) {
+            case TILED -> {
+                //  Внутри фазы клетка обрабатывается одним потоком: особи не блокируются,
+                //  и ждать освобождения жертвы незачем
+                eaterService.setConcurrencyMode(ConcurrencyMode.CELL_OWNERSHIP);
+                reproductionService.setConcurrencyMode(ConcurrencyMode.CELL_OWNERSHIP);
+                moveableService.setConcurrencyMode(ConcurrencyMode.CELL_OWNERSHIP);
+                eaterService.setHuntTryPauseMillis(0);
+                //  Перемещение без мониторов клеток назначения: очереди принимаются планировщиком после фазы
+                moveableService.setDeferredMigration(true);
+                StepScheduler stepScheduler = new StepScheduler(field, factory, eaterService, reproductionService, moveableService, threadCount);
+                stepScheduler.setStepOffset(step);
+                scheduler = stepScheduler;
+            }
+            case PLATFORM_THREADS, VIRTUAL_THREADS -> {
+                if (!pacing) {
+                    eaterService.setHuntTryPauseMillis(0);
+                }
+                //  Исполнитель создается один раз на игру и закрывается по ее окончании
+                ExecutorService executor = executionMode == ExecutionMode.VIRTUAL_THREADS
+                        ? Executors.newVirtualThreadPerTaskExecutor()
+                        : Executors.newFixedThreadPool(PLATFORM_POOL_SIZE);
+                scheduler = new OrganismTaskScheduler(field, factory, eaterService, reproductionService, moveableService, executor, pacing);
             }
-            System.out.println();
         }
-        System.out.println();
     }
 
     /**
-     * Запускает жизненный цикл для особи (один такт или "год жизни")
+     * Создает игру по контрольной точке: продолжение прерванного прогона с сохраненного такта.
+     * Размер поля и особи берутся из контрольной точки (densityPercent и occupancyPercent не используются)
      *
-     * @param x
+     * @param checkpoint
+     * @param options
      * @return
+     * @throws IOException
+     * @throws URISyntaxException
+     * @throws ClassNotFoundException
      */
-    private Callable<Void> organismTask(AbstractIslandOrganism x) {
-        return () -> {
-            try {
-                Utils.showText(x.getName() + " начинает свои жизненные потребности");
-                //  Едим
-                if (x instanceof Eater) {
-                    eaterService.accept((Eater) x);
-                    Thread.sleep(10);
-                }
-                //  Занимаемся размножением
-                reproductionService.accept(x);
-                Thread.sleep(10);
-
-                //  Перемещаемся на соседние клетки
-                if (x instanceof Moveable) {
-                    moveableService.accept((Moveable) x);
-                    Thread.sleep(10);
-                }
+    public static Game restore(Path checkpoint, GameOptions options) throws IOException, URISyntaxException, ClassNotFoundException {
+        Game game = new Game(options, factory -> Checkpoint.read(checkpoint, factory, options.isPlantStocks()));
+        game.restored = true;
+        return game;
+    }
 
-                Utils.showText(x.getName() + " заканчивает свои жизненные потребности");
-                return null;
+    /**
+     * Записывает контрольную точку текущего состояния (между тактами)
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writeCheckpoint(Path file) throws IOException {
+        Checkpoint.write(file, step, field, factory);
+    }
 
-            } catch (Exception e) {
-                System.err.println(e);
-                throw e;
-            }
+    /**
+     * Возвращает число действий фазы, сорванных из-за того, что особь была занята другим потоком
+     *
+     * @param phase
+     * @return
+     */
+    public long getDroppedActions(StepScheduler.Phase phase) {
+        return switch (phase) {
+            case EAT -> eaterService.getDroppedActions();
+            case REPRODUCE -> reproductionService.getDroppedActions();
+            case MOVE -> moveableService.getDroppedActions();
+            case UPDATE -> 0;
         };
     }
 
     /**
-     * Запускает потоки для всех особей на всем поле (Такт или "год жизни" для поля)
+     * Увеличивает такт ("год жизни")
+     */
+    private void incStep() {
+        //  Состояние клеток обновляется планировщиком в конце такта (StepScheduler.Phase.UPDATE)
+        this.step++;
+    }
+
+    /**
+     * Передает состояние поля на вывод (вывод выполняется в потоке renderer)
+     *
+     * @param stepMillis длительность такта, -1 для начального состояния
+     */
+    private void showState(long stepMillis) {
+        renderer.submit(FieldSnapshot.of(field, factory.getSpeciesCount(), step, stepMillis));
+    }
+
+    /**
+     * Выполняет такт для всего поля ("год жизни" для поля)
      *
+     * @return длительность такта (мс)
      * @throws ExecutionException
      * @throws InterruptedException
      */
-    private void makeAction() throws ExecutionException, InterruptedException {
-        ExecutorService organismListExecutorService = Executors.newFixedThreadPool(600);
-        List<Callable<Void>> tasks = new ArrayList<>();
-
-        try {
-            for (int i = 0; i < field.getRowCount(); i++) {
-                for (int j = 0; j < field.getColCount(); j++) {
-                    int finalI = i;
-                    int finalJ = j;
-
-                    var list = field.getCell(finalI, finalJ).getOrganismList();
-                    //  Делаем "снимок" списка, чтобы избавиться от его изменений во время итераций
-                    List<? extends AbstractIslandOrganism> snapshot;
-                    synchronized (list) {
-                        snapshot = new ArrayList<>(list.stream().toList());
-                    }
-                    //  Перемешиваем для равномерного распределения
-                    Collections.shuffle(snapshot);
-
-                    for (var x : snapshot) {
-                        tasks.add(organismTask(x));
-                    }
-                }
-            }
-
-            long startTime = System.currentTimeMillis();
-            List<Future<Void>> futures = organismListExecutorService.invokeAll(tasks);
-            for (Future<Void> future : futures) {
-                try {
-                    future.get();
-                } catch (ExecutionException e) {
-                    throw e;
-                }
-            }
-            long endTime = System.currentTimeMillis();
-            System.out.println("Completed in " + (endTime - startTime) + " ms");
-        } finally {
-            organismListExecutorService.shutdown();
-            try {
-                if (!organismListExecutorService.awaitTermination(800, TimeUnit.SECONDS)) {
-                    organismListExecutorService.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
+    private long makeAction() throws ExecutionException, InterruptedException {
+        StepEvent event = new StepEvent();
+        event.begin();
+        long startTime = System.currentTimeMillis();
+        scheduler.runStep();
+        long stepMillis = System.currentTimeMillis() - startTime;
+        event.end();
+        if (event.shouldCommit()) {
+            event.step = step + 1;
+            event.mode = executionMode.name();
+            event.organisms = field.getOrganismCount();
+            event.commit();
         }
+        return stepMillis;
     }
 
     /**
      * Запуск игры
+     *
+     * @param stepCount
+     * @throws IOException если не удалось записать контрольную точку или временной ряд: прогон прекращается,
+     *                     а не завершается "успешно" без результата
      */
-    public void start(int stepCount) {
+    public void start(int stepCount) throws IOException {
+        MetricsRecorder metricsRecorder = null;
+        PopulationSeriesWriter seriesWriter = null;
         try {
-            System.out.println("Начальное состояние поля");
-            showState();
+            if (render) {
+                renderer = new AsyncRenderer(getIcons(), System.out);
+                showState(-1);
+            }
+            if (metricsFile != null) {
+                metricsRecorder = new MetricsRecorder(metricsFile, getSpeciesNames(), field.getMetrics(), scheduler, this::getDroppedActions);
+            }
+            if (seriesFile != null) {
+                seriesWriter = new PopulationSeriesWriter(seriesFile, getSpeciesNames(), rowCount, colCount, seriesDensity, restored);
+                if (step == 0) {
+                    appendSeries(seriesWriter);
+                }
+            }
             for (int i = 0; i < stepCount; i++) {
-                makeAction();
+                long stepMillis = makeAction();
                 incStep();
-                showState();
+                if (metricsRecorder != null) {
+                    metricsRecorder.recordStep(step, field.getOrganismCount());
+                }
+                if (seriesWriter != null) {
+                    appendSeries(seriesWriter);
+                }
+                if (render) {
+                    showState(stepMillis);
+                }
+                if (checkpointFile != null && checkpointInterval > 0 && step % checkpointInterval == 0) {
+                    saveCheckpoint();
+                }
                 if (field.getOrganismCount() == 0) {
                     break;
                 }
             }
+            if (checkpointFile != null) {
+                saveCheckpoint();
+            }
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             System.err.println("Поток был прерван: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            scheduler.close();
+            if (metricsRecorder != null) {
+                try {
+                    metricsRecorder.close();
+                } catch (IOException e) {
+                    System.err.println("Ошибка записи метрик: " + e.getMessage());
+                }
+            }
+            if (seriesWriter != null) {
+                try {
+                    seriesWriter.close();
+                } catch (IOException e) {
+                    System.err.println("Ошибка записи временного ряда: " + e.getMessage());
+                }
+            }
+            if (renderer != null) {
+                renderer.close();
+            }
+        }
+    }
+
+    /**
+     * Записывает контрольную точку в checkpointFile
+     *
+     * @throws IOException
+     */
+    private void saveCheckpoint() throws IOException {
+        try {
+            writeCheckpoint(checkpointFile);
+        } catch (IOException e) {
+            throw new IOException("Не удалось записать контрольную точку " + checkpointFile + " (такт " + step + "): " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Передает численность после такта во временной ряд
+     *
+     * @param seriesWriter
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void appendSeries(PopulationSeriesWriter seriesWriter) throws IOException, InterruptedException {
+        FieldSnapshot snapshot = seriesDensity ? FieldSnapshot.of(field, factory.getSpeciesCount(), step, -1) : null;
+        seriesWriter.append(step, field.getPopulation().getCounts(), snapshot);
+    }
+
+    /**
+     * Возвращает имена видов (индекс - номер вида)
+     *
+     * @return
+     */
+    private String[] getSpeciesNames() {
+        String[] names = new String[factory.getSpeciesCount()];
+        for (int id = 0; id < names.length; id++) {
+            names[id] = factory.getTypeBySpeciesId(id).getSimpleName();
+        }
+        return names;
+    }
+
+    /**
+     * Возвращает иконки видов (индекс - номер вида)
+     *
+     * @return
+     */
+    private String[] getIcons() {
+        String[] icons = new String[factory.getSpeciesCount()];
+        for (int id = 0; id < icons.length; id++) {
+            icons[id] = factory.getPrototypeBySpeciesId(id).getIcon();
         }
+        return icons;
     }
 }
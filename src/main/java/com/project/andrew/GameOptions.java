@@ -0,0 +1,35 @@
+package com.project.andrew;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Параметры создания игры (см. Game). Не заданные параметры имеют значения по умолчанию
+ */
+@Getter
+@Builder(toBuilder = true)
+public final class GameOptions {
+    //  Число потоков (для TILED; PLATFORM_THREADS использует пул из Game.PLATFORM_POOL_SIZE потоков)
+    @Builder.Default
+    private final int threadCount = Runtime.getRuntime().availableProcessors();
+
+    //  Способ выполнения такта
+    @Builder.Default
+    private final ExecutionMode executionMode = ExecutionMode.TILED;
+
+    //  Делать ли паузы между действиями особей (только для задач на особь)
+    @Builder.Default
+    private final boolean pacing = true;
+
+    //  Начальное число особей на клетке в процентах от числа по умолчанию
+    @Builder.Default
+    private final int densityPercent = 100;
+
+    //  Доля участков поля (в процентах), заселяемых при создании (остальные не выделяются)
+    @Builder.Default
+    private final int occupancyPercent = 100;
+
+    //  Хранить ли растения на клетках общим запасом (PlantStock), а не особями-объектами.
+    //  Контрольная точка подходит для обоих способов
+    private final boolean plantStocks;
+}
@@ -1,18 +1,35 @@
 package com.project.andrew;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import com.project.andrew.interfaces.Eater;
+import com.project.andrew.interfaces.Moveable;
 import lombok.Getter;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class OrganismFactory {
+    //  Системное свойство: файл двоичного кэша конфигурации видов (см. SpeciesConfigCache), не задано - без кэша
+    public static final String CACHE_PROPERTY = "island.configCache";
+    //  Каталог описаний видов и файл вероятностей поедания (ресурсы)
+    private static final String CONFIG_DIRECTORY = "organism/config";
+    private static final String FOOD_CONSUMPTION_PROBABILITY_FILE = "organism/foodConsumptionProbability.yaml";
+    //  Монитор открытия, чтения и закрытия файловой системы архива (см. readConfigFiles)
+    private static final Object JAR_FILE_SYSTEM_LOCK = new Object();
+
     //  Возвращает все типы организмов
     private final Set<Class<? extends AbstractIslandOrganism>> TYPES = new HashSet<>();
     //  Возвращает карту прототипов организмов (применяется для их размножения)
@@ -23,93 +40,245 @@ public class OrganismFactory {
     private final Map<Class<? extends AbstractIslandOrganism>, Map<Class<? extends AbstractIslandOrganism>, Integer>> foodConsumptionProbability = new HashMap<>();
     private final String organismClassPackageName = OrganismFactory.class.getPackage().getName() + ".entity";
 
-    public OrganismFactory() throws IOException, URISyntaxException, ClassNotFoundException {
-        init();
+    //  Типы организмов по номеру вида (номера плотные: 0..N-1, назначаются при загрузке в порядке имен классов)
+    private List<Class<? extends AbstractIslandOrganism>> speciesTypes;
+    //  Прототипы организмов по номеру вида
+    private AbstractIslandOrganism[] speciesPrototypes;
+    //  Вероятность (0..100), с которой вид i съедает вид j
+    private int[][] foodProbabilityMatrix;
+    //  Номера видов, которых может съесть вид i
+    private int[][] preyIds;
+    //  Является ли вид "едоком" (Eater)
+    private boolean[] eaterSpecies;
+    //  Является ли вид перемещаемым (Moveable)
+    private boolean[] moveableSpecies;
+
+    /**
+     * Общий YAMLMapper (потокобезопасен после создания). Создается при первом разборе YAML,
+     * поэтому при попадании в кэш конфигурации Jackson не загружается
+     */
+    private static final class Yaml {
+        private static final YAMLMapper MAPPER = new YAMLMapper();
     }
 
     /**
-     * Создает и возвращает прототип организма с свойствами из @param resource класса @param type
+     * Создает фабрику; кэш конфигурации - из системного свойства CACHE_PROPERTY
      *
-     * @param resource
-     * @param type
-     * @return
      * @throws IOException
+     * @throws URISyntaxException
+     * @throws ClassNotFoundException
      */
+    public OrganismFactory() throws IOException, URISyntaxException, ClassNotFoundException {
+        this(System.getProperty(CACHE_PROPERTY) == null ? null : Path.of(System.getProperty(CACHE_PROPERTY)));
+    }
 
-    private AbstractIslandOrganism loadObject(URL resource, Class<? extends AbstractIslandOrganism> type) throws IOException {
-        YAMLMapper yamlMapper = new YAMLMapper();
-        AbstractIslandOrganism organism = yamlMapper.readValue(resource, type);
-        organism.init();
-        return organism;
+    /**
+     * @param cacheFile файл двоичного кэша конфигурации видов (null - без кэша)
+     * @throws IOException
+     * @throws URISyntaxException
+     * @throws ClassNotFoundException
+     */
+    public OrganismFactory(Path cacheFile) throws IOException, URISyntaxException, ClassNotFoundException {
+        init(cacheFile);
     }
 
     /**
      * Инициализация прототипов организмов.
      * Создаются прототипы организмов с свойствами описанных в organism/config
-     * Создается карта карт для, с какой вероятностью животное съедает "пищу", если они находятся на одной клетке
+     * Создается карта карт для, с какой вероятностью животное съедает "пищу", если они находятся на одной клетке.
+     * Конфигурация берется из кэша, если он записан для того же содержимого файлов, иначе разбирается
+     * (файлы видов - параллельно) и записывается в кэш
      *
+     * @param cacheFile
      * @throws IOException
      * @throws ClassNotFoundException
      * @throws URISyntaxException
      */
-    private void init() throws IOException, ClassNotFoundException, URISyntaxException {
-        Path dir = Path.of(OrganismFactory.class.getClassLoader().getResource("organism/config").toURI());
-        Path foodConsumptionProbabilityFile = Path.of(OrganismFactory.class.getClassLoader().getResource("organism/foodConsumptionProbability.yaml").toURI());
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.{yaml,yml}")) {
-            for (Path entry : stream) {
-                Class<? extends AbstractIslandOrganism> clazz = (Class<? extends AbstractIslandOrganism>) Class.forName(organismClassPackageName + "." + FilenameUtils.getBaseName(entry.toString()));
-                TYPES.add(clazz);
-                AbstractIslandOrganism organism = loadObject(entry.toUri().toURL(), clazz);
-                PROTOTYPES.put(clazz, organism);
+    private void init(Path cacheFile) throws IOException, ClassNotFoundException, URISyntaxException {
+        Map<String, byte[]> files = readConfigFiles();
+        byte[] key = SpeciesConfigCache.hash(files);
+        SpeciesConfigCache.Contents contents = cacheFile == null ? null : SpeciesConfigCache.read(cacheFile, key);
+        if (contents == null) {
+            contents = parseConfig(files);
+            if (cacheFile != null) {
+                SpeciesConfigCache.write(cacheFile, key, contents);
             }
         }
 
-        loadFoodConsumptionProbabilityFile(foodConsumptionProbabilityFile.toUri().toURL());
+        Map<String, Class<? extends AbstractIslandOrganism>> typesByName = new HashMap<>();
+        ClassLoader classLoader = OrganismFactory.class.getClassLoader();
+        for (var entry : contents.species().entrySet()) {
+            Class<? extends AbstractIslandOrganism> clazz = Class.forName(organismClassPackageName + "." + entry.getKey(), false, classLoader)
+                    .asSubclass(AbstractIslandOrganism.class);
+            TYPES.add(clazz);
+            PROTOTYPES.put(clazz, createPrototype(clazz, entry.getValue()));
+            typesByName.put(entry.getKey(), clazz);
+        }
+        for (var entry : contents.food().entrySet()) {
+            //  Виды без описания игнорируем
+            var keyClass = typesByName.get(entry.getKey());
+            if (keyClass == null) {
+                continue;
+            }
+            Map<Class<? extends AbstractIslandOrganism>, Integer> innerMap = new HashMap<>();
+            for (var innerEntry : entry.getValue().entrySet()) {
+                var innerKeyClass = typesByName.get(innerEntry.getKey());
+                if (innerKeyClass != null) {
+                    innerMap.put(innerKeyClass, innerEntry.getValue());
+                }
+            }
+            foodConsumptionProbability.put(keyClass, innerMap);
+        }
+        initSpeciesIds();
     }
 
     /**
-     * Создается карта карт для, с какой вероятностью животное съедает "пищу", если они находятся на одной клетке
+     * Читает содержимое файлов конфигурации (ключ - путь ресурса).
+     * Каталог ресурсов внутри jar доступен только через файловую систему архива. Фабрики могут создаваться
+     * из нескольких потоков одновременно, поэтому файловая система архива открывается, читается и закрывается
+     * под общим монитором: ее не закроет другой поток, пока каталог читается
      *
-     * @param url
+     * @return
      * @throws IOException
+     * @throws URISyntaxException
      */
-    private void loadFoodConsumptionProbabilityFile(URL url) throws IOException {
-        YAMLMapper yamlMapper = new YAMLMapper();
-        Map<String, Map<String, Integer>> tempMap = yamlMapper.readValue(url, Map.class);
-        for (var entry : tempMap.entrySet()) {
-            Class<? extends AbstractIslandOrganism> keyClass = null;
-            try {
-                keyClass = (Class<? extends AbstractIslandOrganism>) Class.forName(organismClassPackageName + "." + entry.getKey());
-            } catch (ClassNotFoundException e) {
-                //  Если данный класс не найден, игнорируем его
-                continue;
-            }
-            Map<Class<? extends AbstractIslandOrganism>, Integer> innerMap = new HashMap<>();
-            for (var innerEntry : entry.getValue().entrySet()) {
-                Class<? extends AbstractIslandOrganism> innerKeyClass = null;
+    private static Map<String, byte[]> readConfigFiles() throws IOException, URISyntaxException {
+        ClassLoader classLoader = OrganismFactory.class.getClassLoader();
+        Map<String, byte[]> files = new TreeMap<>();
+        URI configUri = Objects.requireNonNull(classLoader.getResource(CONFIG_DIRECTORY), CONFIG_DIRECTORY).toURI();
+        if ("jar".equals(configUri.getScheme())) {
+            synchronized (JAR_FILE_SYSTEM_LOCK) {
+                FileSystem jarFileSystem;
+                boolean opened;
                 try {
-                    innerKeyClass = (Class<? extends AbstractIslandOrganism>) Class.forName(organismClassPackageName + "." + innerEntry.getKey());
-                } catch (ClassNotFoundException e) {
-                    //  Если данный класс не найден, игнорируем его
-                    continue;
+                    jarFileSystem = FileSystems.newFileSystem(configUri, Map.of());
+                    opened = true;
+                } catch (FileSystemAlreadyExistsException e) {
+                    //  Файловую систему архива открыл код вне фабрики - читаем через нее и не закрываем
+                    jarFileSystem = FileSystems.getFileSystem(configUri);
+                    opened = false;
+                }
+                try {
+                    readConfigDirectory(jarFileSystem.provider().getPath(configUri), files);
+                } finally {
+                    if (opened) {
+                        jarFileSystem.close();
+                    }
                 }
-                innerMap.put(innerKeyClass, innerEntry.getValue());
             }
-            foodConsumptionProbability.put(keyClass, innerMap);
+        } else {
+            readConfigDirectory(Path.of(configUri), files);
+        }
+        try (InputStream in = Objects.requireNonNull(classLoader.getResourceAsStream(FOOD_CONSUMPTION_PROBABILITY_FILE), FOOD_CONSUMPTION_PROBABILITY_FILE)) {
+            files.put(FOOD_CONSUMPTION_PROBABILITY_FILE, in.readAllBytes());
+        }
+        return files;
+    }
+
+    private static void readConfigDirectory(Path directory, Map<String, byte[]> files) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{yaml,yml}")) {
+            for (Path entry : stream) {
+                files.put(CONFIG_DIRECTORY + "/" + entry.getFileName(), Files.readAllBytes(entry));
+            }
+        }
+    }
+
+    /**
+     * Разбирает файлы конфигурации: описания видов - параллельно, одним общим YAMLMapper
+     *
+     * @param files
+     * @return
+     * @throws IOException
+     */
+    private static SpeciesConfigCache.Contents parseConfig(Map<String, byte[]> files) throws IOException {
+        Map<String, SpeciesDescriptor> species;
+        try {
+            species = files.entrySet().parallelStream()
+                    .filter(entry -> entry.getKey().startsWith(CONFIG_DIRECTORY + "/"))
+                    .collect(Collectors.toMap(entry -> FilenameUtils.getBaseName(entry.getKey()), entry -> {
+                        try {
+                            return Yaml.MAPPER.readValue(entry.getValue(), SpeciesDescriptor.class);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Ошибка в описании вида " + entry.getKey(), e);
+                        }
+                    }, (x, y) -> x, TreeMap::new));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Map<String, Map<String, Integer>> food = Yaml.MAPPER.readValue(files.get(FOOD_CONSUMPTION_PROBABILITY_FILE),
+                new TypeReference<Map<String, Map<String, Integer>>>() {
+                });
+        return new SpeciesConfigCache.Contents(species, food);
+    }
+
+    /**
+     * Создает и возвращает прототип организма класса @param type со свойствами вида @param descriptor.
+     * Номер вида назначается позже (см. initSpeciesIds)
+     *
+     * @param type
+     * @param descriptor
+     * @return
+     * @throws IOException
+     */
+    private static AbstractIslandOrganism createPrototype(Class<? extends AbstractIslandOrganism> type, SpeciesDescriptor descriptor) throws IOException {
+        AbstractIslandOrganism organism;
+        try {
+            organism = type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Не удалось создать прототип организма " + type.getSimpleName(), e);
+        }
+        organism.setSpecies(descriptor.forSpecies(type.getSimpleName(), -1));
+        organism.init();
+        return organism;
+    }
+
+    /**
+     * Назначает видам плотные номера и строит по ним матрицу вероятностей поедания и списки жертв
+     */
+    private void initSpeciesIds() {
+        speciesTypes = TYPES.stream().sorted(Comparator.comparing(Class::getSimpleName)).toList();
+        int n = speciesTypes.size();
+        speciesPrototypes = new AbstractIslandOrganism[n];
+        eaterSpecies = new boolean[n];
+        moveableSpecies = new boolean[n];
+        for (int id = 0; id < n; id++) {
+            var type = speciesTypes.get(id);
+            speciesPrototypes[id] = PROTOTYPES.get(type);
+            //  Свойства вида (с номером) копируются в особей при клонировании прототипа
+            speciesPrototypes[id].setSpecies(speciesPrototypes[id].getSpecies().forSpecies(type.getSimpleName(), id));
+            eaterSpecies[id] = Eater.class.isAssignableFrom(type);
+            moveableSpecies[id] = Moveable.class.isAssignableFrom(type);
+        }
+        foodProbabilityMatrix = new int[n][n];
+        preyIds = new int[n][];
+        for (int i = 0; i < n; i++) {
+            var food = foodConsumptionProbability.getOrDefault(speciesTypes.get(i), Map.of());
+            List<Integer> prey = new ArrayList<>();
+            for (int j = 0; j < n; j++) {
+                Integer probability = food.get(speciesTypes.get(j));
+                if (probability != null && probability > 0) {
+                    foodProbabilityMatrix[i][j] = probability;
+                    prey.add(j);
+                }
+            }
+            preyIds[i] = prey.stream().mapToInt(Integer::intValue).toArray();
         }
     }
 
     /**
-     * Формирует список особей одного типа организма в количестве определенном по умолчанию для инициализации
+     * Формирует список особей одного типа организма в количестве densityPercent процентов от определенного
+     * по умолчанию для инициализации (но не больше maxNumberIndividualsInCell)
      *
      * @param type
+     * @param densityPercent
      * @return
      * @throws CloneNotSupportedException
      */
-    private List<AbstractIslandOrganism> createOrganismListPerType(Class<? extends AbstractIslandOrganism> type) throws CloneNotSupportedException {
+    private List<AbstractIslandOrganism> createOrganismListPerType(Class<? extends AbstractIslandOrganism> type, int densityPercent) throws CloneNotSupportedException {
         List<AbstractIslandOrganism> list = new ArrayList<>();
         var organism = PROTOTYPES.get(type);
-        for (int i = 0; i < organism.getDefaultNumberIndividualsInCell(); i++) {
+        long count = Math.min((long) organism.getDefaultNumberIndividualsInCell() * densityPercent / 100, organism.getMaxNumberIndividualsInCell());
+        for (int i = 0; i < count; i++) {
             list.add(organism.clone());
         }
         return list;
@@ -134,16 +303,129 @@ public class OrganismFactory {
         return PROTOTYPES.get(type);
     }
 
+    /**
+     * Возвращает число видов организмов
+     *
+     * @return
+     */
+    public int getSpeciesCount() {
+        return speciesTypes.size();
+    }
+
+    /**
+     * Возвращает номер вида по типу организма
+     *
+     * @param type
+     * @return
+     */
+    public int getSpeciesId(Class<? extends AbstractIslandOrganism> type) {
+        return PROTOTYPES.get(type).getSpeciesId();
+    }
+
+    /**
+     * Возвращает тип организма по номеру вида
+     *
+     * @param speciesId
+     * @return
+     */
+    public Class<? extends AbstractIslandOrganism> getTypeBySpeciesId(int speciesId) {
+        return speciesTypes.get(speciesId);
+    }
+
+    /**
+     * Возвращает прототип организма по номеру вида
+     *
+     * @param speciesId
+     * @return
+     */
+    public AbstractIslandOrganism getPrototypeBySpeciesId(int speciesId) {
+        return speciesPrototypes[speciesId];
+    }
+
+    /**
+     * Возвращает прототипы организмов по номеру вида (применяется для их размножения)
+     *
+     * @return
+     */
+    public AbstractIslandOrganism[] getPrototypesBySpeciesId() {
+        return speciesPrototypes.clone();
+    }
+
+    /**
+     * Возвращает прототипы видов растений (индекс - номер вида, null для животных).
+     * Применяется, когда растения хранятся на клетках общим запасом (PlantStock)
+     *
+     * @return
+     */
+    public AbstractIslandOrganism[] getPlantPrototypes() {
+        AbstractIslandOrganism[] plants = new AbstractIslandOrganism[speciesPrototypes.length];
+        for (int id = 0; id < plants.length; id++) {
+            if (speciesPrototypes[id] instanceof AbstractIslandPlant) {
+                plants[id] = speciesPrototypes[id];
+            }
+        }
+        return plants;
+    }
+
+    /**
+     * Возвращает матрицу [хищник][жертва] вероятностей (0..100) поедания по номерам видов
+     *
+     * @return
+     */
+    public int[][] getFoodProbabilityMatrix() {
+        return foodProbabilityMatrix;
+    }
+
+    /**
+     * Возвращает списки номеров видов-жертв для каждого вида (индекс - номер вида хищника)
+     *
+     * @return
+     */
+    public int[][] getPreyIds() {
+        return preyIds;
+    }
+
+    /**
+     * Является ли вид "едоком" (Eater)
+     *
+     * @param speciesId
+     * @return
+     */
+    public boolean isEater(int speciesId) {
+        return eaterSpecies[speciesId];
+    }
+
+    /**
+     * Является ли вид перемещаемым (Moveable)
+     *
+     * @param speciesId
+     * @return
+     */
+    public boolean isMoveable(int speciesId) {
+        return moveableSpecies[speciesId];
+    }
+
     /**
      * Формирует список особей ВСЕХ типов организмов
      *
      * @return
      */
     protected List<AbstractIslandOrganism> createOrganismListForCell() {
+        return createOrganismListForCell(100);
+    }
+
+    /**
+     * Формирует список особей ВСЕХ типов организмов с начальной плотностью densityPercent
+     * (в процентах от числа особей по умолчанию)
+     *
+     * @param densityPercent
+     * @return
+     */
+    protected List<AbstractIslandOrganism> createOrganismListForCell(int densityPercent) {
         List<AbstractIslandOrganism> list = new ArrayList<>();
-        TYPES.stream().forEach(type -> {
+        speciesTypes.forEach(type -> {
             try {
-                list.addAll(createOrganismListPerType(type));
+                list.addAll(createOrganismListPerType(type, densityPercent));
             } catch (CloneNotSupportedException e) {
                 throw new RuntimeException(e);
             }
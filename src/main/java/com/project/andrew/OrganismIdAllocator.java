@@ -0,0 +1,49 @@
+package com.project.andrew;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выдача уникальных 64-битных номеров особей без общего счетчика на каждое рождение.
+ * Поток берет из общего счетчика блок номеров и выдает их из блока без синхронизации; к общему счетчику
+ * обращается только раз на BLOCK_SIZE номеров. Виртуальные потоки живут недолго, поэтому им номер выдается
+ * прямо из общего счетчика (блок на каждый виртуальный поток расходовал бы номера и память).
+ * Номера уникальны, но не обязательно идут подряд в порядке рождения
+ */
+public final class OrganismIdAllocator {
+    //  Число номеров в блоке потока
+    static final int BLOCK_SIZE = 1024;
+
+    //  Первый номер, еще не выданный ни одному блоку
+    private static final AtomicLong NEXT = new AtomicLong(1);
+
+    /**
+     * Блок номеров потока: [next, limit)
+     */
+    private static final class Block {
+        private long next;
+        private long limit;
+    }
+
+    private static final ThreadLocal<Block> BLOCK = ThreadLocal.withInitial(Block::new);
+
+    private OrganismIdAllocator() {
+    }
+
+    /**
+     * Возвращает новый уникальный номер особи
+     *
+     * @return
+     */
+    public static long nextId() {
+        Thread thread = Thread.currentThread();
+        if (thread.isVirtual()) {
+            return NEXT.getAndIncrement();
+        }
+        Block block = BLOCK.get();
+        if (block.next == block.limit) {
+            block.next = NEXT.getAndAdd(BLOCK_SIZE);
+            block.limit = block.next + BLOCK_SIZE;
+        }
+        return block.next++;
+    }
+}
@@ -0,0 +1,176 @@
+package com.project.andrew;
+
+import com.project.andrew.interfaces.Eater;
+import com.project.andrew.interfaces.Moveable;
+import com.project.andrew.interfaces.StepExecutor;
+import com.project.andrew.lifeServices.EaterService;
+import com.project.andrew.lifeServices.MoveableService;
+import com.project.andrew.lifeServices.ReproductionService;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выполнение такта задачей на каждую особь: особь последовательно ест, размножается и перемещается,
+ * особи разных потоков захватываются через tryLock. После всех задач обновляется состояние поля.
+ * Время фаз питания, размножения и перемещения - сумма длительностей вызовов сервисов во всех потоках.
+ * Исполнитель задач (пул платформенных потоков или виртуальный поток на задачу) создается один раз
+ * и закрывается вместе с планировщиком
+ */
+public class OrganismTaskScheduler implements StepExecutor {
+    //  Пауза после каждого сервиса (мс), если включен темп (pacing)
+    private static final long SERVICE_PAUSE_MILLIS = 10;
+
+    private final Field field;
+    private final OrganismFactory factory;
+    private final EaterService eaterService;
+    private final ReproductionService reproductionService;
+    private final MoveableService moveableService;
+    //  Исполнитель задач на особь
+    private final ExecutorService executor;
+    //  Делать ли паузы между действиями особи
+    private final boolean pacing;
+    //  Суммарное время фаз (нс), индекс - StepScheduler.Phase.ordinal()
+    private final LongAdder[] phaseNanos = new LongAdder[StepScheduler.Phase.values().length];
+    //  Число особей, обработанных за все такты
+    private final LongAdder processedOrganisms = new LongAdder();
+    //  Число выполненных тактов
+    @Getter
+    private long stepCount = 0;
+
+    public OrganismTaskScheduler(Field field, OrganismFactory factory, EaterService eaterService, ReproductionService reproductionService, MoveableService moveableService, ExecutorService executor, boolean pacing) {
+        this.field = field;
+        this.factory = factory;
+        this.eaterService = eaterService;
+        this.reproductionService = reproductionService;
+        this.moveableService = moveableService;
+        this.executor = executor;
+        this.pacing = pacing;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Пауза после действия особи (только если включен темп)
+     *
+     * @throws InterruptedException
+     */
+    private void pause() throws InterruptedException {
+        if (pacing) {
+            Thread.sleep(SERVICE_PAUSE_MILLIS);
+        }
+    }
+
+    /**
+     * Запускает жизненный цикл для особи (один такт или "год жизни")
+     *
+     * @param x
+     * @return
+     */
+    private Callable<Void> organismTask(AbstractIslandOrganism x) {
+        return () -> {
+            try {
+                int speciesId = x.getSpeciesId();
+                //  Едим
+                if (factory.isEater(speciesId)) {
+                    long startTime = System.nanoTime();
+                    eaterService.accept((Eater) x);
+                    phaseNanos[StepScheduler.Phase.EAT.ordinal()].add(System.nanoTime() - startTime);
+                    pause();
+                }
+                //  Занимаемся размножением
+                long startTime = System.nanoTime();
+                reproductionService.accept(x);
+                phaseNanos[StepScheduler.Phase.REPRODUCE.ordinal()].add(System.nanoTime() - startTime);
+                pause();
+
+                //  Перемещаемся на соседние клетки
+                if (factory.isMoveable(speciesId)) {
+                    startTime = System.nanoTime();
+                    moveableService.accept((Moveable) x);
+                    phaseNanos[StepScheduler.Phase.MOVE.ordinal()].add(System.nanoTime() - startTime);
+                    pause();
+                }
+
+                return null;
+
+            } catch (Exception e) {
+                System.err.println(e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Запускает потоки для всех особей на всем поле (Такт или "год жизни" для поля)
+     *
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    @Override
+    public void runStep() throws ExecutionException, InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Chunk chunk : field.getChunks()) {
+            for (int k = 0; k < chunk.size(); k++) {
+                //  Делаем "снимок" списка, чтобы избавиться от его изменений во время итераций
+                List<AbstractIslandOrganism> snapshot = chunk.getCell(k).getOrganismList();
+                //  Перемешиваем для равномерного распределения
+                Collections.shuffle(snapshot);
+
+                for (var x : snapshot) {
+                    tasks.add(organismTask(x));
+                }
+            }
+        }
+        processedOrganisms.add(tasks.size());
+
+        List<Future<Void>> futures = executor.invokeAll(tasks);
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+
+        long startTime;
+        if (field.hasPlantStocks()) {
+            //  Растения общим запасом не получают задач: запас каждой клетки размножается после задач особей
+            startTime = System.nanoTime();
+            for (Chunk chunk : field.getChunks()) {
+                for (int k = 0; k < chunk.size(); k++) {
+                    reproductionService.growPlants(chunk.getCell(k));
+                }
+            }
+            phaseNanos[StepScheduler.Phase.REPRODUCE.ordinal()].add(System.nanoTime() - startTime);
+        }
+        startTime = System.nanoTime();
+        field.updateBeforeEvent();
+        phaseNanos[StepScheduler.Phase.UPDATE.ordinal()].add(System.nanoTime() - startTime);
+        stepCount++;
+    }
+
+    @Override
+    public long getPhaseNanos(StepScheduler.Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    @Override
+    public long getProcessedOrganisms() {
+        return processedOrganisms.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(800, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
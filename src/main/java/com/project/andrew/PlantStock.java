@@ -0,0 +1,107 @@
+package com.project.andrew;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Растения одного вида на клетке как общий запас: число растений каждого возраста, без объекта на каждое растение.
+ * Растения не перемещаются и неотличимы друг от друга, поэтому для поедания, размножения и старения достаточно
+ * распределения по возрасту. Не потокобезопасен, синхронизация - на уровне клетки.
+ */
+public class PlantStock {
+    //  Число растений по возрасту (0..lifeSpan): растение старше lifeSpan умирает при обновлении клетки
+    private final int[] ageCounts;
+    //  Число растений всех возрастов
+    private int count = 0;
+
+    public PlantStock(int lifeSpan) {
+        ageCounts = new int[lifeSpan + 1];
+    }
+
+    /**
+     * Возвращает число растений
+     *
+     * @return
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Возвращает число растений возраста age
+     *
+     * @param age
+     * @return
+     */
+    public int getCount(int age) {
+        return ageCounts[age];
+    }
+
+    /**
+     * Возвращает наибольший возраст растения в запасе (lifeSpan)
+     *
+     * @return
+     */
+    public int getMaxAge() {
+        return ageCounts.length - 1;
+    }
+
+    /**
+     * Возвращает число растений не моложе minAge
+     *
+     * @param minAge
+     * @return
+     */
+    public int countAtLeast(int minAge) {
+        int result = 0;
+        for (int age = Math.max(minAge, 0); age < ageCounts.length; age++) {
+            result += ageCounts[age];
+        }
+        return result;
+    }
+
+    /**
+     * Добавляет n растений возраста age (возраст больше lifeSpan приводится к lifeSpan)
+     *
+     * @param age
+     * @param n
+     */
+    void add(int age, int n) {
+        ageCounts[Math.min(Math.max(age, 0), ageCounts.length - 1)] += n;
+        count += n;
+    }
+
+    /**
+     * Убирает одно случайное растение (вероятность выбора возраста пропорциональна числу растений этого возраста)
+     *
+     * @param random
+     * @return false, если запас пуст
+     */
+    boolean take(RandomGenerator random) {
+        if (count == 0) {
+            return false;
+        }
+        int r = random.nextInt(count);
+        int age = 0;
+        while (r >= ageCounts[age]) {
+            r -= ageCounts[age];
+            age++;
+        }
+        ageCounts[age]--;
+        count--;
+        return true;
+    }
+
+    /**
+     * Прибавляет "год" жизни всем растениям. Растения старше lifeSpan умирают
+     *
+     * @return число умерших растений
+     */
+    int incAge() {
+        int last = ageCounts.length - 1;
+        int died = ageCounts[last];
+        System.arraycopy(ageCounts, 0, ageCounts, 1, last);
+        ageCounts[0] = 0;
+        count -= died;
+        return died;
+    }
+}
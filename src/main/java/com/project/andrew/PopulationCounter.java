@@ -0,0 +1,65 @@
+package com.project.andrew;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Численность особей на поле по видам. Клетки обновляют счетчики при каждом добавлении и удалении особи
+ * (LongAdder - без конкуренции между потоками разных клеток), читать их можно из любого потока в любой момент.
+ * Особи в пути между клетками (в очередях перехода) не учитываются до их приема на клетку
+ */
+public class PopulationCounter {
+    //  Число особей по номерам видов
+    private final LongAdder[] speciesCounts;
+    //  Число особей всех видов
+    private final LongAdder total = new LongAdder();
+
+    public PopulationCounter(int speciesCount) {
+        speciesCounts = new LongAdder[speciesCount];
+        for (int i = 0; i < speciesCount; i++) {
+            speciesCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Изменяет численность вида на delta
+     *
+     * @param speciesId
+     * @param delta
+     */
+    void add(int speciesId, int delta) {
+        speciesCounts[speciesId].add(delta);
+        total.add(delta);
+    }
+
+    /**
+     * Возвращает число особей всех видов
+     *
+     * @return
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Возвращает число особей вида
+     *
+     * @param speciesId
+     * @return
+     */
+    public long getCount(int speciesId) {
+        return speciesCounts[speciesId].sum();
+    }
+
+    /**
+     * Возвращает число особей каждого вида (индекс - номер вида)
+     *
+     * @return
+     */
+    public long[] getCounts() {
+        long[] counts = new long[speciesCounts.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = speciesCounts[i].sum();
+        }
+        return counts;
+    }
+}
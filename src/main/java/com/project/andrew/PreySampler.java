@@ -0,0 +1,165 @@
+package com.project.andrew;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Выбор жертвы хищника на клетке за O(1) (метод псевдонимов Уолкера).
+ * <p>
+ * Исходы: "найдена особь вида j и съедена" с весом n_j * p_j и "найдена особь вида j, охота неудачна"
+ * с весом n_j * (100 - p_j), где n_j - число особей вида j на клетке, p_j - вероятность поедания.
+ * Это то же распределение, что и у выбора случайной особи из всех жертв на клетке с последующим броском вероятности.
+ * <p>
+ * Таблица строится заново только при изменении состава клетки (см. Cell.getPreySampler)
+ * или чисел живых особей в проходе охоты по клетке (см. EaterService.eatCell).
+ * Не потокобезопасен, используется под монитором клетки.
+ */
+public class PreySampler {
+    //  Номера видов-жертв хищника
+    private final int[] preyIds;
+    //  Вероятности поедания (0..100) по номерам видов-жертв
+    private final int[] probabilities;
+    //  Таблицы метода псевдонимов на 2 * preyIds.length исходов: исход 2k - поймал вид preyIds[k], 2k+1 - упустил
+    private final double[] threshold;
+    private final int[] alias;
+    private final long[] weight;
+    //  Рабочие массивы построения таблицы ("малые" и "большие" исходы), выделяются один раз
+    private final int[] small;
+    private final int[] large;
+    //  Версия состава клетки, для которой построена таблица
+    private long version = -1;
+    //  Есть ли на клетке хотя бы одна жертва
+    private boolean empty = true;
+
+    public PreySampler(int[] preyIds, int[] probabilities) {
+        this.preyIds = preyIds;
+        this.probabilities = probabilities;
+        int n = preyIds.length * 2;
+        threshold = new double[n];
+        alias = new int[n];
+        weight = new long[n];
+        small = new int[n];
+        large = new int[n];
+    }
+
+    /**
+     * Построена ли таблица для данной версии числа особей
+     *
+     * @param countsVersion
+     * @return
+     */
+    public boolean isActual(long countsVersion) {
+        return version == countsVersion;
+    }
+
+    /**
+     * Строит таблицу по числу особей каждого вида на клетке
+     *
+     * @param cell
+     * @param cellVersion версия состава клетки
+     */
+    void rebuild(Cell cell, long cellVersion) {
+        long total = 0;
+        for (int k = 0; k < preyIds.length; k++) {
+            total += setWeights(k, cell.getOrganismCount(preyIds[k]));
+        }
+        build(total, cellVersion);
+    }
+
+    /**
+     * Строит таблицу по заданному числу живых особей каждого вида (например, в проходе охоты по клетке,
+     * где съеденные особи снимаются с клетки только в конце прохода)
+     *
+     * @param counts        число живых особей по номерам видов
+     * @param countsVersion версия чисел counts
+     */
+    public void rebuild(int[] counts, long countsVersion) {
+        long total = 0;
+        for (int k = 0; k < preyIds.length; k++) {
+            total += setWeights(k, counts[preyIds[k]]);
+        }
+        build(total, countsVersion);
+    }
+
+    private long setWeights(int k, long count) {
+        int probability = probabilities[preyIds[k]];
+        weight[2 * k] = count * probability;
+        weight[2 * k + 1] = count * (100 - probability);
+        return count * 100;
+    }
+
+    private void build(long total, long newVersion) {
+        int n = weight.length;
+        version = newVersion;
+        empty = total == 0;
+        if (empty) {
+            return;
+        }
+        //  Метод Воуза: делим исходы на "малые" (вес меньше среднего) и "большие"
+        int smallCount = 0;
+        int largeCount = 0;
+        double[] scaled = threshold;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (double) weight[i] * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount];
+            int l = large[--largeCount];
+            alias[s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1.0;
+            if (scaled[l] < 1.0) {
+                small[smallCount++] = l;
+            } else {
+                large[largeCount++] = l;
+            }
+        }
+        while (largeCount > 0) {
+            int l = large[--largeCount];
+            threshold[l] = 1.0;
+            alias[l] = l;
+        }
+        while (smallCount > 0) {
+            int s = small[--smallCount];
+            threshold[s] = 1.0;
+            alias[s] = s;
+        }
+    }
+
+    /**
+     * Возвращает исход (см. getPreyId и isCaught) или -1, если жертв на клетке нет
+     *
+     * @param random
+     * @return
+     */
+    public int draw(RandomGenerator random) {
+        if (empty) {
+            return -1;
+        }
+        int i = random.nextInt(threshold.length);
+        return random.nextDouble() < threshold[i] ? i : alias[i];
+    }
+
+    /**
+     * Возвращает номер вида жертвы для исхода
+     *
+     * @param outcome
+     * @return
+     */
+    public int getPreyId(int outcome) {
+        return preyIds[outcome >> 1];
+    }
+
+    /**
+     * Удалась ли охота для исхода
+     *
+     * @param outcome
+     * @return
+     */
+    public boolean isCaught(int outcome) {
+        return (outcome & 1) == 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.project.andrew;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Особи одного вида на клетке. Компактный массив без "дыр":
+ * особь знает свой индекс в массиве (bucketIndex), поэтому удаление - это перестановка последней особи на место удаляемой.
+ * Не потокобезопасен, синхронизация - на уровне клетки.
+ */
+class SpeciesBucket {
+    private AbstractIslandOrganism[] items = new AbstractIslandOrganism[4];
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    AbstractIslandOrganism get(int index) {
+        return items[index];
+    }
+
+    void add(AbstractIslandOrganism organism) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        organism.setBucketIndex(size);
+        items[size++] = organism;
+    }
+
+    /**
+     * Удаляет особь за O(1)
+     *
+     * @param organism
+     * @return false, если особи нет в данном наборе
+     */
+    boolean remove(AbstractIslandOrganism organism) {
+        int index = organism.getBucketIndex();
+        if (index < 0 || index >= size || items[index] != organism) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Удаляет особь по индексу: на ее место переставляется последняя особь
+     *
+     * @param index
+     */
+    void removeAt(int index) {
+        AbstractIslandOrganism removed = items[index];
+        size--;
+        if (index != size) {
+            items[index] = items[size];
+            items[index].setBucketIndex(index);
+        }
+        items[size] = null;
+        removed.setBucketIndex(-1);
+    }
+
+    /**
+     * Добавляет всех особей в список
+     *
+     * @param list
+     */
+    void copyTo(List<? super AbstractIslandOrganism> list) {
+        for (int i = 0; i < size; i++) {
+            list.add(items[i]);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.project.andrew;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Двоичный кэш разобранной конфигурации видов (organism/config/*.yaml и foodConsumptionProbability.yaml).
+ * Ключ кэша - SHA-256 содержимого всех файлов конфигурации: при изменении любого файла кэш не подходит
+ * и конфигурация разбирается заново. При попадании в кэш YAML не разбирается (и Jackson не загружается).
+ * <p>
+ * Формат (DataOutputStream, big-endian):
+ * <pre>
+ * MAGIC, VERSION, длина ключа, ключ, число видов, для каждого вида: имя класса (UTF) и свойства вида,
+ * число хищников, для каждого: имя (UTF), число жертв, для каждой: имя (UTF) и вероятность (int)
+ * </pre>
+ * Запись идет в уникальный временный файл в каталоге кэша (кэш могут одновременно записывать несколько процессов),
+ * который затем атомарно заменяет прежний кэш.
+ */
+public final class SpeciesConfigCache {
+    //  Сигнатура файла "ISCC"
+    public static final int MAGIC = 0x49534343;
+    public static final int VERSION = 1;
+
+    /**
+     * Разобранная конфигурация
+     *
+     * @param species свойства видов по имени класса (номера видов еще не назначены)
+     * @param food    вероятность (0..100) поедания: хищник -> жертва -> вероятность (имена классов)
+     */
+    public record Contents(Map<String, SpeciesDescriptor> species, Map<String, Map<String, Integer>> food) {
+    }
+
+    private SpeciesConfigCache() {
+    }
+
+    /**
+     * Возвращает ключ кэша: SHA-256 имен и содержимого файлов конфигурации
+     *
+     * @param files содержимое файлов по имени (в порядке имен)
+     * @return
+     */
+    public static byte[] hash(Map<String, byte[]> files) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (var entry : new TreeMap<>(files).entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(entry.getValue());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Читает кэш
+     *
+     * @param file
+     * @param key  ключ текущей конфигурации
+     * @return конфигурация или null, если кэша нет, он поврежден или записан для другой конфигурации
+     */
+    public static Contents read(Path file, byte[] key) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] fileKey = new byte[in.readInt()];
+            in.readFully(fileKey);
+            if (!Arrays.equals(fileKey, key)) {
+                return null;
+            }
+            Map<String, SpeciesDescriptor> species = new TreeMap<>();
+            int speciesCount = in.readInt();
+            for (int k = 0; k < speciesCount; k++) {
+                species.put(in.readUTF(), readDescriptor(in));
+            }
+            Map<String, Map<String, Integer>> food = new TreeMap<>();
+            int predatorCount = in.readInt();
+            for (int k = 0; k < predatorCount; k++) {
+                String predator = in.readUTF();
+                Map<String, Integer> prey = new TreeMap<>();
+                int preyCount = in.readInt();
+                for (int n = 0; n < preyCount; n++) {
+                    prey.put(in.readUTF(), in.readInt());
+                }
+                food.put(predator, prey);
+            }
+            return new Contents(species, food);
+        } catch (IOException e) {
+            //  Отсутствующий или поврежденный кэш: конфигурация будет разобрана заново
+            return null;
+        }
+    }
+
+    /**
+     * Записывает кэш
+     *
+     * @param file
+     * @param key
+     * @param contents
+     * @throws IOException
+     */
+    public static void write(Path file, byte[] key, Contents contents) throws IOException {
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(contents.species().size());
+                for (var entry : contents.species().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeDescriptor(out, entry.getValue());
+                }
+                out.writeInt(contents.food().size());
+                for (var entry : contents.food().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (var prey : entry.getValue().entrySet()) {
+                        out.writeUTF(prey.getKey());
+                        out.writeInt(prey.getValue());
+                    }
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void writeDescriptor(DataOutputStream out, SpeciesDescriptor descriptor) throws IOException {
+        out.writeUTF(descriptor.getIcon());
+        out.writeInt(descriptor.getLifeSpan());
+        out.writeDouble(descriptor.getWeight());
+        out.writeInt(descriptor.getMinimumReproductiveAge());
+        out.writeInt(descriptor.getOffspringCount());
+        out.writeInt(descriptor.getDefaultNumberIndividualsInCell());
+        out.writeInt(descriptor.getMaxNumberIndividualsInCell());
+        out.writeInt(descriptor.getMaxSpeed());
+        out.writeInt(descriptor.getHuntTryCount());
+        out.writeDouble(descriptor.getFoodRequirement());
+        out.writeDouble(descriptor.getDefaultFoodConsumption());
+        out.writeDouble(descriptor.getMovementFoodConsumption());
+    }
+
+    private static SpeciesDescriptor readDescriptor(DataInputStream in) throws IOException {
+        return SpeciesDescriptor.builder()
+                .icon(in.readUTF())
+                .lifeSpan(in.readInt())
+                .weight(in.readDouble())
+                .minimumReproductiveAge(in.readInt())
+                .offspringCount(in.readInt())
+                .defaultNumberIndividualsInCell(in.readInt())
+                .maxNumberIndividualsInCell(in.readInt())
+                .maxSpeed(in.readInt())
+                .huntTryCount(in.readInt())
+                .foodRequirement(in.readDouble())
+                .defaultFoodConsumption(in.readDouble())
+                .movementFoodConsumption(in.readDouble())
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.project.andrew;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * Неизменяемые свойства вида организмов (из organism/config/*.yaml).
+ * Создается фабрикой один раз на вид; все особи вида ссылаются на один объект и хранят только свое изменяемое состояние.
+ * Свойства животных (maxSpeed, huntTryCount, foodRequirement, расход энергии) у растений не используются
+ */
+@Getter
+@Builder(toBuilder = true)
+@Jacksonized
+public final class SpeciesDescriptor {
+    //  Номер вида (назначается фабрикой, -1 - еще не назначен)
+    @Builder.Default
+    private final int speciesId = -1;
+
+    //  Название организма (животного, растения и т.п.)
+    private final String organismName;
+
+    //  Иконка организма
+    @Builder.Default
+    private final String icon = "X";
+
+    //  Время жизни (Через сколько ходов наступить смерть)
+    @Builder.Default
+    private final int lifeSpan = 10;
+
+    //  Вес организма
+    @Builder.Default
+    private final double weight = 10;
+
+    //  Минимальный возраст для размножения
+    @Builder.Default
+    private final int minimumReproductiveAge = 2;
+
+    //  Число потомков, получаемых в результате размножения
+    @Builder.Default
+    private final int offspringCount = 1;
+
+    //  Число особей данного организма на клетке при создании клетки
+    @Builder.Default
+    private final int defaultNumberIndividualsInCell = 10;
+
+    //  Максимальное число особей данного организма на клетке
+    @Builder.Default
+    private final int maxNumberIndividualsInCell = 20;
+
+    //  Максимальная скорость перемещения (число клеток за ход)
+    @Builder.Default
+    private final int maxSpeed = 1;
+
+    //  Число попыток охоты за ход
+    @Builder.Default
+    private final int huntTryCount = 1;
+
+    //  Сколько килограммов пищи нужно животному для полного насыщения
+    @Builder.Default
+    private final double foodRequirement = 1;
+
+    //  Затрата энергии (уменьшение текущего уровня насыщения ) за ход, по умолчанию
+    @Builder.Default
+    private final double defaultFoodConsumption = 1;
+
+    //  Затрата энергии (уменьшение текущего уровня насыщения ) на передвижение на клетку
+    @Builder.Default
+    private final double movementFoodConsumption = 1;
+
+    /**
+     * Возвращает свойства вида с назначенными названием и номером.
+     * Не допускаем, чтобы число особей при инициализации превысило максимальное число
+     *
+     * @param organismName
+     * @param speciesId
+     * @return
+     */
+    SpeciesDescriptor forSpecies(String organismName, int speciesId) {
+        return toBuilder()
+                .organismName(organismName)
+                .speciesId(speciesId)
+                .defaultNumberIndividualsInCell(Math.min(defaultNumberIndividualsInCell, maxNumberIndividualsInCell))
+                .build();
+    }
+}
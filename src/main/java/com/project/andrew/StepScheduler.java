@@ -0,0 +1,354 @@
+package com.project.andrew;
+
+import com.project.andrew.interfaces.Moveable;
+import com.project.andrew.interfaces.StepExecutor;
+import com.project.andrew.jfr.PhaseEvent;
+import com.project.andrew.jfr.SweepEvent;
+import com.project.andrew.lifeServices.EaterService;
+import com.project.andrew.lifeServices.MoveableService;
+import com.project.andrew.lifeServices.ReproductionService;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Планировщик такта. Выполняет такт по фазам на выделенных участках поля (Chunk - тайлы):
+ * питание, размножение, перемещение, обновление состояния клеток.
+ * Между фазами - барьер: следующая фаза начинается только после того, как все тайлы завершили текущую.
+ * Список участков берется заново перед каждым проходом: участки, выделенные переходами особей, принимают
+ * свои очереди в том же такте, а освобожденные при обновлении больше не обрабатываются.
+ * Перемещение двухфазное: в фазе особи ставятся в очереди клеток назначения, после барьера каждая клетка
+ * принимает свою очередь целиком (ограничение maxNumberIndividualsInCell проверяется один раз на клетку).
+ * Пул потоков (work-stealing) создается один раз и переиспользуется между тактами.
+ */
+public class StepScheduler implements StepExecutor {
+    //  Размер стороны тайла (в клетках) по умолчанию
+    public static final int DEFAULT_TILE_SIZE = 8;
+    //  Шаг последовательности SplitMix64 (нечетный, дробная часть золотого сечения)
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Фазы такта в порядке их выполнения
+     */
+    public enum Phase {
+        EAT, REPRODUCE, MOVE, UPDATE
+    }
+
+    /**
+     * Прямоугольный участок поля [rowFrom, rowTo) x [colFrom, colTo)
+     */
+    public record Tile(int rowFrom, int rowTo, int colFrom, int colTo) {
+    }
+
+    private final Field field;
+    private final OrganismFactory factory;
+    private final EaterService eaterService;
+    private final ReproductionService reproductionService;
+    private final MoveableService moveableService;
+    private final ForkJoinPool pool;
+    //  Суммарное время выполнения каждой фазы (нс), индекс - Phase.ordinal()
+    private final long[] phaseNanos = new long[Phase.values().length];
+    //  Число особей, обработанных за все такты
+    private final LongAdder processedOrganisms = new LongAdder();
+    //  Число выполненных тактов
+    @Getter
+    private long stepCount = 0;
+    //  Зерно детерминированного режима. null - случайность из ThreadLocalRandom.
+    //  При заданном зерне каждая клетка в каждом такте получает свой поток случайных чисел, зависящий только
+    //  от зерна, такта и координат клетки: ход популяции не зависит от числа потоков
+    @Setter
+    private Long seed = null;
+    //  Номер такта, с которого начат прогон (при продолжении с контрольной точки): входит в зерно клетки,
+    //  чтобы продолженный прогон совпадал с непрерывным
+    @Setter
+    private long stepOffset = 0;
+
+    /**
+     * Размер тайла равен размеру участка поля (Field.getChunkSize)
+     *
+     * @param field
+     * @param factory
+     * @param eaterService
+     * @param reproductionService
+     * @param moveableService
+     * @param parallelism
+     */
+    public StepScheduler(Field field, OrganismFactory factory, EaterService eaterService, ReproductionService reproductionService, MoveableService moveableService, int parallelism) {
+        this.field = field;
+        this.factory = factory;
+        this.eaterService = eaterService;
+        this.reproductionService = reproductionService;
+        this.moveableService = moveableService;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Разбивает поле на тайлы размером tileSize x tileSize (крайние тайлы могут быть меньше)
+     *
+     * @param rowCount
+     * @param colCount
+     * @param tileSize
+     * @return
+     */
+    public static List<Tile> createTiles(int rowCount, int colCount, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Размер тайла должен быть положительным: " + tileSize);
+        }
+        List<Tile> list = new ArrayList<>();
+        for (int row = 0; row < rowCount; row += tileSize) {
+            for (int col = 0; col < colCount; col += tileSize) {
+                list.add(new Tile(row, Math.min(row + tileSize, rowCount), col, Math.min(col + tileSize, colCount)));
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Выполняет один такт ("год жизни") для всего поля
+     *
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    @Override
+    public void runStep() throws ExecutionException, InterruptedException {
+        for (Phase phase : Phase.values()) {
+            PhaseEvent event = new PhaseEvent();
+            event.begin();
+            long startTime = System.nanoTime();
+            runPhase(phase);
+            phaseNanos[phase.ordinal()] += System.nanoTime() - startTime;
+            event.end();
+            if (event.shouldCommit()) {
+                event.step = stepCount;
+                event.phase = phase.name();
+                event.commit();
+            }
+        }
+        stepCount++;
+    }
+
+    /**
+     * Возвращает суммарное время выполнения фазы за все такты (нс)
+     *
+     * @param phase
+     * @return
+     */
+    @Override
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Возвращает число особей, обработанных за все такты (каждая живая особь учитывается один раз за такт)
+     *
+     * @return
+     */
+    @Override
+    public long getProcessedOrganisms() {
+        return processedOrganisms.sum();
+    }
+
+    /**
+     * Выполняет фазу на всех тайлах (барьер - после каждого прохода по тайлам)
+     *
+     * @param phase
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    private void runPhase(Phase phase) throws ExecutionException, InterruptedException {
+        if (phase == Phase.UPDATE) {
+            runOnTiles(this::updateTile);
+            return;
+        }
+        //  Питание и размножение не выходят за пределы клетки, а перемещаемые особи до конца фазы
+        //  находятся только в очередях клеток назначения: другие тайлы их не видят
+        runOnTiles(chunk -> {
+            List<List<AbstractIslandOrganism>> snapshots = takeTileSnapshots(chunk, phase);
+            if (phase == Phase.EAT) {
+                //  Охота разрешается на всей клетке за один проход (см. EaterService.eatCell)
+                for (int k = 0; k < chunk.size(); k++) {
+                    eaterService.eatCell(chunk.getCell(k), snapshots.get(k));
+                }
+                return;
+            }
+            snapshots.forEach(snapshot -> processSnapshot(snapshot, phase));
+            if (phase == Phase.REPRODUCE && field.hasPlantStocks()) {
+                //  Растения общим запасом не попадают в снимки: запас размножается один раз на клетку
+                for (int k = 0; k < chunk.size(); k++) {
+                    reproductionService.growPlants(chunk.getCell(k));
+                }
+            }
+        });
+        if (phase == Phase.MOVE) {
+            runOnTiles(this::acceptMigrants);
+        }
+    }
+
+    /**
+     * Принимает очереди перехода всех клеток тайла
+     *
+     * @param chunk
+     */
+    private void acceptMigrants(Chunk chunk) {
+        for (int k = 0; k < chunk.size(); k++) {
+            Cell cell = chunk.getCell(k);
+            if (cell.hasMigrants()) {
+                cell.acceptMigrants();
+            }
+        }
+    }
+
+    /**
+     * Выполняет действие для каждого выделенного участка поля и дожидается завершения всех участков
+     *
+     * @param action
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    private void runOnTiles(Consumer<Chunk> action) throws ExecutionException, InterruptedException {
+        List<Chunk> chunks = field.getChunks();
+        List<Callable<Void>> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            tasks.add(() -> {
+                action.accept(chunk);
+                return null;
+            });
+        }
+        List<Future<Void>> futures = pool.invokeAll(tasks);
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Обновляет состояние всех клеток тайла после такта и освобождает участок, если на нем не осталось особей
+     *
+     * @param chunk
+     */
+    private void updateTile(Chunk chunk) {
+        SweepEvent event = new SweepEvent();
+        event.begin();
+        int removed = 0;
+        for (int k = 0; k < chunk.size(); k++) {
+            removed += chunk.getCell(k).updateBeforeEvent();
+        }
+        field.releaseIfEmpty(chunk);
+        event.end();
+        if (event.shouldCommit()) {
+            event.rowFrom = chunk.getRowFrom();
+            event.rowTo = chunk.getRowTo();
+            event.colFrom = chunk.getColFrom();
+            event.colTo = chunk.getColTo();
+            event.removed = removed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Делает снимки всех клеток тайла до начала их обработки,
+     * чтобы особь, перешедшая в соседнюю клетку тайла, не ходила дважды за такт
+     *
+     * @param chunk
+     * @param phase
+     * @return
+     */
+    private List<List<AbstractIslandOrganism>> takeTileSnapshots(Chunk chunk, Phase phase) {
+        List<List<AbstractIslandOrganism>> snapshots = new ArrayList<>(chunk.size());
+        for (int k = 0; k < chunk.size(); k++) {
+            Cell cell = chunk.getCell(k);
+            if (phase == Phase.EAT) {
+                //  Первая фаза такта: клетка получает поток случайных чисел на весь такт
+                cell.setRandom(seed == null ? null : new SplittableRandom(cellSeed(cell)));
+            }
+            snapshots.add(takeSnapshot(cell));
+        }
+        if (phase == Phase.EAT) {
+            //  В первой фазе такта на клетках находятся все особи, участвующие в такте
+            long count = 0;
+            for (var snapshot : snapshots) {
+                count += snapshot.size();
+            }
+            processedOrganisms.add(count);
+        }
+        return snapshots;
+    }
+
+    /**
+     * Делает "снимок" списка особей клетки, чтобы избавиться от его изменений во время итераций
+     *
+     * @param cell
+     * @return
+     */
+    private List<AbstractIslandOrganism> takeSnapshot(Cell cell) {
+        List<AbstractIslandOrganism> snapshot = new ArrayList<>(cell.getOrganismList());
+        //  Перемешиваем для равномерного распределения
+        Collections.shuffle(snapshot, cell.getRandom());
+        return snapshot;
+    }
+
+    /**
+     * Возвращает зерно потока случайных чисел клетки на текущий такт.
+     * Зерно, номер такта и номер клетки перемешиваются (mix64 из SplitMix64): у разных клеток одного такта
+     * и у одной клетки в разных тактах зерна различны и не связаны между собой
+     *
+     * @param cell
+     * @return
+     */
+    private long cellSeed(Cell cell) {
+        long stepSeed = mix64(seed + GOLDEN_GAMMA * (stepOffset + stepCount));
+        long cellIndex = (long) cell.getRow() * field.getColCount() + cell.getCol();
+        return mix64(stepSeed + GOLDEN_GAMMA * cellIndex);
+    }
+
+    /**
+     * Перемешивание 64-битного значения (финализатор SplitMix64, взаимно однозначный)
+     *
+     * @param z
+     * @return
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Выполняет фазу для особей из снимка клетки
+     *
+     * @param snapshot
+     * @param phase
+     */
+    private void processSnapshot(List<AbstractIslandOrganism> snapshot, Phase phase) {
+        for (var x : snapshot) {
+            if (x.isDead()) {
+                continue;
+            }
+            //  Выбор действия по номеру вида, без проверки типов каждой особи
+            int speciesId = x.getSpeciesId();
+            switch (phase) {
+                case REPRODUCE -> reproductionService.accept(x);
+                case MOVE -> {
+                    if (factory.isMoveable(speciesId)) {
+                        moveableService.accept((Moveable) x);
+                    }
+                }
+                default -> throw new IllegalStateException("Неизвестная фаза: " + phase);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -1,11 +0,0 @@
-package com.project.andrew;
-
-public class Utils {
-    public static boolean showAdvancedInfo = false;
-
-    public static void showText(String string) {
-        if (showAdvancedInfo) {
-            System.out.println(string);
-        }
-    }
-}
@@ -0,0 +1,123 @@
+package com.project.andrew.columnar;
+
+import lombok.Getter;
+
+/**
+ * Клетка в колоночном представлении мира.
+ * Изменяемое состояние особей хранится в примитивных массивах по видам: возраст, уровень насыщения и признак "жива".
+ * Особь - это индекс в массивах своего вида. Мертвые особи удаляются при уплотнении (compact) перестановкой последней
+ * особи на место удаленной.
+ * Массивы могут храниться в куче (HeapColumnarCell) или вне ее (OffHeapColumnarCell, см. OffHeapCellStore).
+ * <p>
+ * Клетку в каждой фазе изменяет только один поток. Исключение - очередь входящих мигрантов (inbound),
+ * в которую могут писать потоки соседних тайлов.
+ */
+public abstract class ColumnarCell {
+    //  Координата Y (ордината)
+    @Getter
+    private final int row;
+    //  Координата X (абцисса)
+    @Getter
+    private final int col;
+
+    /**
+     * Особь в пути между клетками
+     */
+    record Migrant(int species, int age, float satiation) {
+    }
+
+    protected ColumnarCell(int row, int col) {
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Возвращает число особей вида на клетке (включая мертвых, еще не удаленных)
+     *
+     * @param species
+     * @return
+     */
+    public abstract int size(int species);
+
+    /**
+     * Возвращает число живых особей вида на клетке
+     *
+     * @param species
+     * @return
+     */
+    public abstract int aliveCount(int species);
+
+    /**
+     * Возвращает число живых особей всех видов на клетке
+     *
+     * @return
+     */
+    public abstract int aliveCount();
+
+    public abstract boolean isAlive(int species, int index);
+
+    public abstract int getAge(int species, int index);
+
+    public abstract float getSatiation(int species, int index);
+
+    public abstract void setSatiation(int species, int index, float value);
+
+    /**
+     * Увеличивает возраст особи на единицу
+     *
+     * @param species
+     * @param index
+     * @return новый возраст
+     */
+    public abstract int incAge(int species, int index);
+
+    /**
+     * Лишить особь жизни. Особь остается в массивах до уплотнения
+     *
+     * @param species
+     * @param index
+     */
+    public abstract void kill(int species, int index);
+
+    /**
+     * Добавляет особь на клетку
+     *
+     * @param species
+     * @param age
+     * @param satiation
+     * @return индекс особи
+     */
+    public abstract int add(int species, int age, float satiation);
+
+    /**
+     * Удаляет мертвых особей вида: на место мертвой переставляется последняя особь
+     *
+     * @param species
+     */
+    public abstract void compact(int species);
+
+    /**
+     * Ставит особь в очередь на переход на эту клетку (может вызываться из любого потока)
+     *
+     * @param species
+     * @param age
+     * @param satiation
+     */
+    public abstract void offerMigrant(int species, int age, float satiation);
+
+    /**
+     * Возвращает следующую особь из очереди перехода или null
+     *
+     * @return
+     */
+    abstract Migrant pollMigrant();
+
+    /**
+     * Возвращает текст координаты ячейки
+     *
+     * @return
+     */
+    public String showCellPosition() {
+        return "(" + row + "," + col + ")";
+    }
+}
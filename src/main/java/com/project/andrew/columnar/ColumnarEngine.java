@@ -0,0 +1,303 @@
+package com.project.andrew.columnar;
+
+import com.project.andrew.StepScheduler;
+import com.project.andrew.interfaces.StepExecutor;
+import com.project.andrew.lifeServices.EaterService;
+import com.project.andrew.lifeServices.MoveableService;
+import com.project.andrew.lifeServices.ReproductionService;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Выполнение тактов над колоночным представлением мира.
+ * Фазы и тайлы те же, что и у StepScheduler; особь в клетке - пара (вид, индекс),
+ * а жизненные сервисы работают с массивами клетки, а не с объектами.
+ * Перемещение выполняется в два шага: особи уходят в очереди клеток назначения,
+ * после барьера каждая клетка принимает свою очередь.
+ */
+public class ColumnarEngine implements StepExecutor {
+    //  Особь в порядке обхода клетки кодируется как (вид << SPECIES_SHIFT) | индекс
+    private static final int SPECIES_SHIFT = 20;
+    private static final int INDEX_MASK = (1 << SPECIES_SHIFT) - 1;
+
+    @Getter
+    private final ColumnarField field;
+    private final SpeciesTable table;
+    private final EaterService eaterService;
+    private final ReproductionService reproductionService;
+    private final MoveableService moveableService;
+    private final ForkJoinPool pool;
+    private final List<StepScheduler.Tile> tiles;
+    //  Число живых особей на тайле после последнего такта (считается в фазе обновления), индекс - номер тайла
+    private final long[] tileOrganismCounts;
+    //  Суммарное время выполнения каждой фазы (нс), индекс - Phase.ordinal()
+    private final long[] phaseNanos = new long[StepScheduler.Phase.values().length];
+    //  Число особей, обработанных за все такты
+    private final LongAdder processedOrganisms = new LongAdder();
+    //  Число выполненных тактов
+    @Getter
+    private long stepCount = 0;
+    //  Буфер порядка обхода особей клетки (свой у каждого потока)
+    private final ThreadLocal<int[]> orderBuffer = ThreadLocal.withInitial(() -> new int[1024]);
+    //  Буфер порядка обхода, упорядоченного по трофическим уровням (фаза питания)
+    private final ThreadLocal<int[]> trophicOrderBuffer = ThreadLocal.withInitial(() -> new int[1024]);
+    //  Наибольший трофический уровень видов
+    private final int maxTrophicLevel;
+
+    public ColumnarEngine(ColumnarField field, EaterService eaterService, ReproductionService reproductionService, MoveableService moveableService, int parallelism, int tileSize) {
+        this.field = field;
+        this.table = field.getTable();
+        this.eaterService = eaterService;
+        this.reproductionService = reproductionService;
+        this.moveableService = moveableService;
+        this.pool = new ForkJoinPool(parallelism);
+        this.tiles = StepScheduler.createTiles(field.getRowCount(), field.getColCount(), tileSize);
+        this.tileOrganismCounts = new long[tiles.size()];
+        int maxLevel = 0;
+        for (int s = 0; s < table.size(); s++) {
+            maxLevel = Math.max(maxLevel, eaterService.getTrophicLevel(s));
+        }
+        this.maxTrophicLevel = maxLevel;
+    }
+
+    /**
+     * Выполняет один такт ("год жизни") для всего поля
+     *
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    @Override
+    public void runStep() throws ExecutionException, InterruptedException {
+        for (StepScheduler.Phase phase : StepScheduler.Phase.values()) {
+            long startTime = System.nanoTime();
+            runOnTiles((tile, tileIndex) -> processTile(tile, tileIndex, phase));
+            if (phase == StepScheduler.Phase.MOVE) {
+                //  Прием особей, перешедших на клетки, после того как все тайлы закончили перемещение
+                runOnTiles((tile, tileIndex) -> acceptMigrants(tile));
+            }
+            phaseNanos[phase.ordinal()] += System.nanoTime() - startTime;
+        }
+        stepCount++;
+    }
+
+    /**
+     * Возвращает число живых особей на поле после последнего выполненного такта.
+     * Складывается из счетчиков тайлов, клетки поля не обходятся
+     *
+     * @return
+     */
+    public long getOrganismCount() {
+        long count = 0;
+        for (long tileCount : tileOrganismCounts) {
+            count += tileCount;
+        }
+        return count;
+    }
+
+    @Override
+    public long getPhaseNanos(StepScheduler.Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    @Override
+    public long getProcessedOrganisms() {
+        return processedOrganisms.sum();
+    }
+
+    /**
+     * Выполняет действие на всех тайлах и дожидается их завершения (барьер)
+     *
+     * @param action действие над тайлом и его номером
+     * @throws ExecutionException
+     * @throws InterruptedException
+     */
+    private void runOnTiles(ObjIntConsumer<StepScheduler.Tile> action) throws ExecutionException, InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>(tiles.size());
+        for (int t = 0; t < tiles.size(); t++) {
+            StepScheduler.Tile tile = tiles.get(t);
+            int tileIndex = t;
+            tasks.add(() -> {
+                action.accept(tile, tileIndex);
+                return null;
+            });
+        }
+        List<Future<Void>> futures = pool.invokeAll(tasks);
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Выполняет фазу для всех клеток тайла. В фазе обновления заодно пересчитывается число живых особей тайла
+     *
+     * @param tile
+     * @param tileIndex
+     * @param phase
+     */
+    private void processTile(StepScheduler.Tile tile, int tileIndex, StepScheduler.Phase phase) {
+        long alive = 0;
+        for (int i = tile.rowFrom(); i < tile.rowTo(); i++) {
+            for (int j = tile.colFrom(); j < tile.colTo(); j++) {
+                ColumnarCell cell = field.getCell(i, j);
+                switch (phase) {
+                    case EAT -> {
+                        processedOrganisms.add(cell.aliveCount());
+                        processCell(cell, phase, true);
+                    }
+                    case REPRODUCE -> processCell(cell, phase, false);
+                    case MOVE -> processCell(cell, phase, true);
+                    case UPDATE -> alive += updateCell(cell);
+                }
+            }
+        }
+        if (phase == StepScheduler.Phase.UPDATE) {
+            tileOrganismCounts[tileIndex] = alive;
+        }
+    }
+
+    /**
+     * Выполняет фазу для живых особей клетки в случайном порядке.
+     * В фазе питания сначала охотятся высшие хищники (по убыванию трофического уровня, внутри уровня - случайно).
+     * Обходятся только особи, бывшие на клетке в начале фазы (потомки в этом такте не действуют)
+     *
+     * @param cell
+     * @param phase
+     * @param animalsOnly
+     */
+    private void processCell(ColumnarCell cell, StepScheduler.Phase phase, boolean animalsOnly) {
+        int[] order = orderBuffer.get();
+        int count = 0;
+        for (int s = 0; s < table.size(); s++) {
+            if (animalsOnly && !table.isAnimal(s)) {
+                continue;
+            }
+            for (int i = 0, size = cell.size(s); i < size; i++) {
+                if (!cell.isAlive(s, i)) {
+                    continue;
+                }
+                if (count == order.length) {
+                    order = Arrays.copyOf(order, count * 2);
+                    orderBuffer.set(order);
+                }
+                order[count++] = (s << SPECIES_SHIFT) | i;
+            }
+        }
+        //  Перемешиваем для равномерного распределения
+        var random = ThreadLocalRandom.current();
+        for (int i = count - 1; i > 0; i--) {
+            int k = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[k];
+            order[k] = tmp;
+        }
+        if (phase == StepScheduler.Phase.EAT) {
+            order = sortByTrophicLevel(order, count);
+        }
+        for (int k = 0; k < count; k++) {
+            int species = order[k] >>> SPECIES_SHIFT;
+            int index = order[k] & INDEX_MASK;
+            switch (phase) {
+                case EAT -> eaterService.eat(table, cell, species, index);
+                case REPRODUCE -> reproductionService.reproduce(table, cell, species, index);
+                case MOVE -> moveableService.move(field, cell, species, index);
+                default -> throw new IllegalStateException("Неизвестная фаза: " + phase);
+            }
+        }
+    }
+
+    /**
+     * Упорядочивает особей по убыванию трофического уровня вида, сохраняя порядок внутри уровня
+     *
+     * @param order
+     * @param count
+     * @return упорядоченный буфер (свой у каждого потока)
+     */
+    private int[] sortByTrophicLevel(int[] order, int count) {
+        int[] sorted = trophicOrderBuffer.get();
+        if (sorted.length < count) {
+            sorted = new int[order.length];
+            trophicOrderBuffer.set(sorted);
+        }
+        int k = 0;
+        for (int level = maxTrophicLevel; level >= 0; level--) {
+            for (int i = 0; i < count; i++) {
+                if (eaterService.getTrophicLevel(order[i] >>> SPECIES_SHIFT) == level) {
+                    sorted[k++] = order[i];
+                }
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Принимает особей, перешедших на клетки тайла.
+     * Если в клетке нет места для особи данного вида, то она погибает
+     *
+     * @param tile
+     */
+    private void acceptMigrants(StepScheduler.Tile tile) {
+        for (int i = tile.rowFrom(); i < tile.rowTo(); i++) {
+            for (int j = tile.colFrom(); j < tile.colTo(); j++) {
+                ColumnarCell cell = field.getCell(i, j);
+                //  Убираем ушедших и погибших, чтобы ограничение считалось по фактическим особям
+                for (int s = 0; s < table.size(); s++) {
+                    cell.compact(s);
+                }
+                ColumnarCell.Migrant migrant;
+                while ((migrant = cell.pollMigrant()) != null) {
+                    if (cell.size(migrant.species()) < table.getMaxNumberIndividualsInCell(migrant.species())) {
+                        cell.add(migrant.species(), migrant.age(), migrant.satiation());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Обновляет состояние клетки после такта. Возраст всех особей увеличивается на единицу,
+     * животные расходуют энергию. Мертвые особи удаляются
+     *
+     * @param cell
+     * @return число особей, оставшихся на клетке
+     */
+    private int updateCell(ColumnarCell cell) {
+        int alive = 0;
+        for (int s = 0; s < table.size(); s++) {
+            int lifeSpan = table.getLifeSpan(s);
+            boolean animal = table.isAnimal(s);
+            float consumption = (float) table.getDefaultFoodConsumption(s);
+            for (int i = 0, size = cell.size(s); i < size; i++) {
+                if (!cell.isAlive(s, i)) {
+                    continue;
+                }
+                if (cell.incAge(s, i) > lifeSpan) {
+                    cell.kill(s, i);
+                } else if (animal) {
+                    float satiation = cell.getSatiation(s, i) - consumption;
+                    cell.setSatiation(s, i, satiation);
+                    if (satiation <= 0) {
+                        cell.kill(s, i);
+                    }
+                }
+            }
+            cell.compact(s);
+            alive += cell.size(s);
+        }
+        return alive;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
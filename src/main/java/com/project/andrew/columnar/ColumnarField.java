@@ -0,0 +1,107 @@
+package com.project.andrew.columnar;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Поле (остров) в колоночном представлении мира.
+ * Состояние особей хранится в куче (клетки HeapColumnarCell) или вне ее (OffHeapCellStore)
+ */
+public class ColumnarField implements AutoCloseable {
+    //  Число строк на поле
+    @Getter
+    private final int rowCount;
+    //  Число столбцов на поле
+    @Getter
+    private final int colCount;
+    //  Свойства видов
+    @Getter
+    private final SpeciesTable table;
+    //  Клетки в куче (null, если состояние хранится вне кучи)
+    private final ColumnarCell[][] grid;
+    //  Хранилище вне кучи (null, если клетки в куче)
+    @Getter
+    private final OffHeapCellStore store;
+
+    /**
+     * Создает поле с клетками в куче
+     *
+     * @param m
+     * @param n
+     * @param table
+     */
+    public ColumnarField(int m, int n, SpeciesTable table) {
+        this(m, n, table, null);
+    }
+
+    /**
+     * Создает поле
+     *
+     * @param m
+     * @param n
+     * @param table
+     * @param store хранилище состояния клеток вне кучи (размером m x n) или null - клетки в куче
+     */
+    public ColumnarField(int m, int n, SpeciesTable table, OffHeapCellStore store) {
+        this.rowCount = m;
+        this.colCount = n;
+        this.table = table;
+        this.store = store;
+        grid = store == null ? new ColumnarCell[m][n] : null;
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                if (grid != null) {
+                    grid[i][j] = new HeapColumnarCell(i, j, table);
+                }
+                ColumnarCell cell = getCell(i, j);
+                // Инициализация поля. Заполнение ячеек (предустановка) особями всех видов
+                for (int s = 0; s < table.size(); s++) {
+                    //  При создании новой особи предполагаем, что она частично сыта
+                    float satiation = (float) (table.getFoodRequirement(s) * 0.75);
+                    for (int k = 0; k < table.getDefaultNumberIndividualsInCell(s); k++) {
+                        cell.add(s, 0, satiation);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает клетку на поле
+     *
+     * @param row
+     * @param col
+     * @return
+     */
+    public ColumnarCell getCell(int row, int col) {
+        return grid != null ? grid[row][col] : store.getCell(row, col);
+    }
+
+    /**
+     * Возвращает число живых особей на поле
+     *
+     * @return
+     */
+    public long getOrganismCount() {
+        long count = 0;
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < colCount; j++) {
+                count += getCell(i, j).aliveCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Освобождает хранилище вне кучи
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+}
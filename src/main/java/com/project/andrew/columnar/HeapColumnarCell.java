@@ -0,0 +1,149 @@
+package com.project.andrew.columnar;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Клетка колоночного представления в куче: состояние особей хранится в примитивных массивах по видам,
+ * массивы растут по мере необходимости.
+ */
+public class HeapColumnarCell extends ColumnarCell {
+    //  Начальная емкость массивов вида
+    private static final int INITIAL_CAPACITY = 4;
+
+    //  Число особей вида на клетке (включая мертвых, еще не удаленных)
+    private final int[] size;
+    //  Число живых особей вида на клетке
+    private final int[] aliveCount;
+    //  Возраст особей
+    private final int[][] age;
+    //  Уровень насыщения особей (только для животных, для растений - null)
+    private final float[][] satiation;
+    //  Признак "особь жива"
+    private final boolean[][] alive;
+    //  Особи, переходящие на эту клетку в фазе перемещения
+    private final ConcurrentLinkedQueue<Migrant> inbound = new ConcurrentLinkedQueue<>();
+
+    public HeapColumnarCell(int row, int col, SpeciesTable table) {
+        super(row, col);
+        int n = table.size();
+        size = new int[n];
+        aliveCount = new int[n];
+        age = new int[n][];
+        satiation = new float[n][];
+        alive = new boolean[n][];
+        for (int s = 0; s < n; s++) {
+            age[s] = new int[INITIAL_CAPACITY];
+            alive[s] = new boolean[INITIAL_CAPACITY];
+            if (table.isAnimal(s)) {
+                satiation[s] = new float[INITIAL_CAPACITY];
+            }
+        }
+    }
+
+    @Override
+    public int size(int species) {
+        return size[species];
+    }
+
+    @Override
+    public int aliveCount(int species) {
+        return aliveCount[species];
+    }
+
+    @Override
+    public int aliveCount() {
+        int count = 0;
+        for (int c : aliveCount) {
+            count += c;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isAlive(int species, int index) {
+        return alive[species][index];
+    }
+
+    @Override
+    public int getAge(int species, int index) {
+        return age[species][index];
+    }
+
+    @Override
+    public float getSatiation(int species, int index) {
+        return satiation[species][index];
+    }
+
+    @Override
+    public void setSatiation(int species, int index, float value) {
+        satiation[species][index] = value;
+    }
+
+    @Override
+    public int incAge(int species, int index) {
+        return ++age[species][index];
+    }
+
+    @Override
+    public void kill(int species, int index) {
+        if (alive[species][index]) {
+            alive[species][index] = false;
+            aliveCount[species]--;
+        }
+    }
+
+    @Override
+    public int add(int species, int age, float satiation) {
+        int index = size[species];
+        if (index == this.age[species].length) {
+            int capacity = index * 2;
+            this.age[species] = Arrays.copyOf(this.age[species], capacity);
+            this.alive[species] = Arrays.copyOf(this.alive[species], capacity);
+            if (this.satiation[species] != null) {
+                this.satiation[species] = Arrays.copyOf(this.satiation[species], capacity);
+            }
+        }
+        this.age[species][index] = age;
+        this.alive[species][index] = true;
+        if (this.satiation[species] != null) {
+            this.satiation[species][index] = satiation;
+        }
+        size[species]++;
+        aliveCount[species]++;
+        return index;
+    }
+
+    @Override
+    public void compact(int species) {
+        int[] ages = age[species];
+        boolean[] alives = alive[species];
+        float[] satiations = satiation[species];
+        int n = size[species];
+        int i = 0;
+        while (i < n) {
+            if (alives[i]) {
+                i++;
+                continue;
+            }
+            n--;
+            ages[i] = ages[n];
+            alives[i] = alives[n];
+            if (satiations != null) {
+                satiations[i] = satiations[n];
+            }
+            alives[n] = false;
+        }
+        size[species] = n;
+    }
+
+    @Override
+    public void offerMigrant(int species, int age, float satiation) {
+        inbound.add(new Migrant(species, age, satiation));
+    }
+
+    @Override
+    Migrant pollMigrant() {
+        return inbound.poll();
+    }
+}
@@ -0,0 +1,221 @@
+package com.project.andrew.columnar;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Хранилище состояния особей всех клеток поля вне кучи: в прямых буферах (ByteBuffer.allocateDirect)
+ * или в файле, отображенном в память (FileChannel.map). В куче остается только описание разметки записей,
+ * поэтому размер поля ограничен не -Xmx, а памятью и диском, а сборщику мусора нечего обходить.
+ * <p>
+ * У каждой клетки запись фиксированного размера: число особей, число живых особей и число пришедших особей по видам,
+ * затем массивы вида (возраст, уровень насыщения для животных, признак "жива") емкостью max(maxNumberIndividualsInCell,
+ * defaultNumberIndividualsInCell) - больше особей вида на клетке не бывает.
+ * У животных в записи есть и очередь перехода той же емкости (возраст и уровень насыщения): место в ней занимается
+ * атомарным увеличением числа пришедших, особи сверх емкости все равно не были бы приняты и отбрасываются сразу.
+ * Записи разложены по тайлам: клетки тайла tileSize x tileSize лежат подряд, тайлы - построчно, поэтому тайл,
+ * обрабатываемый в фазе такта, занимает непрерывный участок. У отображенного файла ОС подгружает только те страницы,
+ * к которым обращаются обрабатываемые тайлы, и может вытеснять страницы остальных; файл разреженный.
+ * Временный файл, созданный самим хранилищем, удаляется при его закрытии, а заданный файл создается заново
+ * (существующий файл не перезаписывается) и остается на диске.
+ * <p>
+ * Память разбита на сегменты не больше 2 ГБ (предел ByteBuffer), тайл целиком лежит в одном сегменте.
+ * Клетка - легкое представление записи (OffHeapColumnarCell), создаваемое при каждом обращении.
+ */
+public class OffHeapCellStore implements AutoCloseable {
+    //  Выравнивание записи клетки (байт)
+    private static final int RECORD_ALIGNMENT = Long.BYTES;
+    //  Атомарный доступ к int в прямом буфере (для занятия места в очереди перехода)
+    static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final int rowCount;
+    private final int colCount;
+    private final int tileSize;
+    //  Число тайлов по горизонтали
+    private final int tileColCount;
+    //  Число видов
+    final int speciesCount;
+    //  Емкость массивов вида в записи клетки
+    final int[] capacity;
+    //  Смещения массивов вида в записи клетки (смещение насыщения -1 у растений)
+    final int[] ageOffset;
+    final int[] satiationOffset;
+    final int[] aliveOffset;
+    //  Смещения очереди перехода вида (-1 у растений)
+    final int[] inboundAgeOffset;
+    final int[] inboundSatiationOffset;
+    //  Размер записи клетки (байт)
+    @Getter
+    private final int recordSize;
+    //  Число тайлов в сегменте
+    private final int tilesPerSegment;
+    private final ByteBuffer[] segments;
+    //  Общий размер хранилища (байт)
+    @Getter
+    private final long byteSize;
+    //  Отображенный файл (null - прямые буферы)
+    private final Path file;
+    //  Создан ли файл самим хранилищем (временный файл удаляется при закрытии)
+    private final boolean temporary;
+
+    private OffHeapCellStore(int rowCount, int colCount, SpeciesTable table, int tileSize, Path file, boolean temporary) throws IOException {
+        this.rowCount = rowCount;
+        this.colCount = colCount;
+        this.tileSize = tileSize;
+        this.file = file;
+        this.temporary = temporary;
+        speciesCount = table.size();
+        capacity = new int[speciesCount];
+        ageOffset = new int[speciesCount];
+        satiationOffset = new int[speciesCount];
+        aliveOffset = new int[speciesCount];
+        inboundAgeOffset = new int[speciesCount];
+        inboundSatiationOffset = new int[speciesCount];
+        //  Заголовок записи: число особей, число живых особей и число пришедших особей по видам
+        int offset = 3 * speciesCount * Integer.BYTES;
+        for (int s = 0; s < speciesCount; s++) {
+            capacity[s] = Math.max(table.getMaxNumberIndividualsInCell(s), table.getDefaultNumberIndividualsInCell(s));
+            ageOffset[s] = offset;
+            offset += capacity[s] * Integer.BYTES;
+            satiationOffset[s] = -1;
+            inboundAgeOffset[s] = -1;
+            inboundSatiationOffset[s] = -1;
+            if (table.isAnimal(s)) {
+                satiationOffset[s] = offset;
+                offset += capacity[s] * Float.BYTES;
+                inboundAgeOffset[s] = offset;
+                offset += capacity[s] * Integer.BYTES;
+                inboundSatiationOffset[s] = offset;
+                offset += capacity[s] * Float.BYTES;
+            }
+            aliveOffset[s] = offset;
+            offset += capacity[s];
+            offset = (offset + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+        }
+        recordSize = (offset + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+
+        long tileBytes = (long) tileSize * tileSize * recordSize;
+        if (tileBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Тайл " + tileSize + "x" + tileSize + " не помещается в сегмент хранилища");
+        }
+        tileColCount = (colCount + tileSize - 1) / tileSize;
+        long tileCount = (long) ((rowCount + tileSize - 1) / tileSize) * tileColCount;
+        tilesPerSegment = (int) (Integer.MAX_VALUE / tileBytes);
+        byteSize = tileCount * tileBytes;
+        segments = new ByteBuffer[Math.toIntExact((tileCount + tilesPerSegment - 1) / tilesPerSegment)];
+
+        if (file == null) {
+            for (int k = 0; k < segments.length; k++) {
+                segments[k] = ByteBuffer.allocateDirect((int) segmentBytes(k, tileCount, tileBytes)).order(ByteOrder.nativeOrder());
+            }
+            return;
+        }
+        //  Временный файл уже создан пустым, заданный файл создается (чужой файл не перезаписываем).
+        //  Отображение остается действительным и после закрытия канала
+        try (FileChannel channel = temporary
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            for (int k = 0; k < segments.length; k++) {
+                segments[k] = channel.map(FileChannel.MapMode.READ_WRITE, (long) k * tilesPerSegment * tileBytes,
+                        segmentBytes(k, tileCount, tileBytes)).order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    private long segmentBytes(int segment, long tileCount, long tileBytes) {
+        return Math.min(tilesPerSegment, tileCount - (long) segment * tilesPerSegment) * tileBytes;
+    }
+
+    /**
+     * Создает хранилище в прямых буферах (память вне кучи, ограничена -XX:MaxDirectMemorySize)
+     *
+     * @param rowCount
+     * @param colCount
+     * @param table
+     * @param tileSize размер стороны тайла планировщика
+     * @return
+     */
+    public static OffHeapCellStore direct(int rowCount, int colCount, SpeciesTable table, int tileSize) {
+        try {
+            return new OffHeapCellStore(rowCount, colCount, table, tileSize, null, false);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Создает хранилище в новом файле, отображенном в память. Файл остается на диске после закрытия хранилища
+     *
+     * @param file     файл (не должен существовать)
+     * @param rowCount
+     * @param colCount
+     * @param table
+     * @param tileSize размер стороны тайла планировщика
+     * @return
+     * @throws java.nio.file.FileAlreadyExistsException если файл уже существует
+     * @throws IOException
+     */
+    public static OffHeapCellStore mapped(Path file, int rowCount, int colCount, SpeciesTable table, int tileSize) throws IOException {
+        return new OffHeapCellStore(rowCount, colCount, table, tileSize, file, false);
+    }
+
+    /**
+     * Создает хранилище во временном файле, отображенном в память. Файл удаляется при закрытии хранилища
+     *
+     * @param rowCount
+     * @param colCount
+     * @param table
+     * @param tileSize размер стороны тайла планировщика
+     * @return
+     * @throws IOException
+     */
+    public static OffHeapCellStore mapped(int rowCount, int colCount, SpeciesTable table, int tileSize) throws IOException {
+        Path file = Files.createTempFile("island", ".cells");
+        try {
+            return new OffHeapCellStore(rowCount, colCount, table, tileSize, file, true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает клетку поля - представление ее записи в хранилище
+     *
+     * @param row
+     * @param col
+     * @return
+     */
+    public ColumnarCell getCell(int row, int col) {
+        int tileIndex = (row / tileSize) * tileColCount + col / tileSize;
+        int local = (tileIndex % tilesPerSegment) * tileSize * tileSize + (row % tileSize) * tileSize + col % tileSize;
+        return new OffHeapColumnarCell(this, segments[tileIndex / tilesPerSegment], local * recordSize, row, col);
+    }
+
+    /**
+     * Освобождает хранилище: прямые буферы и отображения освобождаются сборщиком мусора,
+     * временный отображенный файл удаляется сразу
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (temporary) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (file == null ? "direct" : "mapped " + file) + ", " + rowCount + "x" + colCount + ", запись клетки " + recordSize + " байт";
+    }
+}
@@ -0,0 +1,168 @@
+package com.project.andrew.columnar;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Клетка колоночного представления, состояние которой хранится вне кучи - в записи OffHeapCellStore.
+ * Объект не хранит состояния, кроме адреса записи (и позиции приема очереди перехода),
+ * и создается при каждом обращении к клетке. Емкость массивов вида фиксирована разметкой хранилища
+ */
+final class OffHeapColumnarCell extends ColumnarCell {
+    private final OffHeapCellStore store;
+    //  Сегмент хранилища и смещение записи клетки в нем
+    private final ByteBuffer buffer;
+    private final int base;
+    //  Позиция приема очереди перехода: вид и номер особи
+    private int pollSpecies = 0;
+    private int pollIndex = 0;
+
+    OffHeapColumnarCell(OffHeapCellStore store, ByteBuffer buffer, int base, int row, int col) {
+        super(row, col);
+        this.store = store;
+        this.buffer = buffer;
+        this.base = base;
+    }
+
+    @Override
+    public int size(int species) {
+        return buffer.getInt(base + species * Integer.BYTES);
+    }
+
+    private void setSize(int species, int value) {
+        buffer.putInt(base + species * Integer.BYTES, value);
+    }
+
+    @Override
+    public int aliveCount(int species) {
+        return buffer.getInt(base + (store.speciesCount + species) * Integer.BYTES);
+    }
+
+    private void setAliveCount(int species, int value) {
+        buffer.putInt(base + (store.speciesCount + species) * Integer.BYTES, value);
+    }
+
+    @Override
+    public int aliveCount() {
+        int count = 0;
+        for (int s = 0; s < store.speciesCount; s++) {
+            count += aliveCount(s);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isAlive(int species, int index) {
+        return buffer.get(base + store.aliveOffset[species] + index) != 0;
+    }
+
+    @Override
+    public int getAge(int species, int index) {
+        return buffer.getInt(base + store.ageOffset[species] + index * Integer.BYTES);
+    }
+
+    @Override
+    public float getSatiation(int species, int index) {
+        return buffer.getFloat(base + store.satiationOffset[species] + index * Float.BYTES);
+    }
+
+    @Override
+    public void setSatiation(int species, int index, float value) {
+        buffer.putFloat(base + store.satiationOffset[species] + index * Float.BYTES, value);
+    }
+
+    @Override
+    public int incAge(int species, int index) {
+        int position = base + store.ageOffset[species] + index * Integer.BYTES;
+        int age = buffer.getInt(position) + 1;
+        buffer.putInt(position, age);
+        return age;
+    }
+
+    @Override
+    public void kill(int species, int index) {
+        int position = base + store.aliveOffset[species] + index;
+        if (buffer.get(position) != 0) {
+            buffer.put(position, (byte) 0);
+            setAliveCount(species, aliveCount(species) - 1);
+        }
+    }
+
+    @Override
+    public int add(int species, int age, float satiation) {
+        int index = size(species);
+        if (index == store.capacity[species]) {
+            throw new IllegalStateException("На клетке " + showCellPosition() + " нет места для особи вида " + species);
+        }
+        buffer.putInt(base + store.ageOffset[species] + index * Integer.BYTES, age);
+        buffer.put(base + store.aliveOffset[species] + index, (byte) 1);
+        if (store.satiationOffset[species] >= 0) {
+            buffer.putFloat(base + store.satiationOffset[species] + index * Float.BYTES, satiation);
+        }
+        setSize(species, index + 1);
+        setAliveCount(species, aliveCount(species) + 1);
+        return index;
+    }
+
+    @Override
+    public void compact(int species) {
+        int ages = base + store.ageOffset[species];
+        int alives = base + store.aliveOffset[species];
+        int satiations = store.satiationOffset[species] < 0 ? -1 : base + store.satiationOffset[species];
+        int n = size(species);
+        int i = 0;
+        while (i < n) {
+            if (buffer.get(alives + i) != 0) {
+                i++;
+                continue;
+            }
+            n--;
+            buffer.putInt(ages + i * Integer.BYTES, buffer.getInt(ages + n * Integer.BYTES));
+            buffer.put(alives + i, buffer.get(alives + n));
+            if (satiations >= 0) {
+                buffer.putFloat(satiations + i * Float.BYTES, buffer.getFloat(satiations + n * Float.BYTES));
+            }
+            buffer.put(alives + n, (byte) 0);
+        }
+        setSize(species, n);
+    }
+
+    @Override
+    public void offerMigrant(int species, int age, float satiation) {
+        int slot = (int) OffHeapCellStore.INT_HANDLE.getAndAdd(buffer, inboundCountPosition(species), 1);
+        //  Особь сверх емкости не была бы принята клеткой
+        if (slot < store.capacity[species]) {
+            buffer.putInt(base + store.inboundAgeOffset[species] + slot * Integer.BYTES, age);
+            buffer.putFloat(base + store.inboundSatiationOffset[species] + slot * Float.BYTES, satiation);
+        }
+    }
+
+    /**
+     * Возвращает следующую особь из очереди перехода или null.
+     * Принятые очереди видов очищаются
+     *
+     * @return
+     */
+    @Override
+    Migrant pollMigrant() {
+        while (pollSpecies < store.speciesCount) {
+            int species = pollSpecies;
+            int count = Math.min(buffer.getInt(inboundCountPosition(species)), store.capacity[species]);
+            if (pollIndex < count) {
+                int index = pollIndex++;
+                return new Migrant(species,
+                        buffer.getInt(base + store.inboundAgeOffset[species] + index * Integer.BYTES),
+                        buffer.getFloat(base + store.inboundSatiationOffset[species] + index * Float.BYTES));
+            }
+            if (count > 0) {
+                buffer.putInt(inboundCountPosition(species), 0);
+            }
+            pollSpecies++;
+            pollIndex = 0;
+        }
+        return null;
+    }
+
+    private int inboundCountPosition(int species) {
+        return base + (2 * store.speciesCount + species) * Integer.BYTES;
+    }
+}
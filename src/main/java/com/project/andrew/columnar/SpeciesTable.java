@@ -0,0 +1,175 @@
+package com.project.andrew.columnar;
+
+import com.project.andrew.AbstractIslandAnimal;
+import com.project.andrew.AbstractIslandOrganism;
+import com.project.andrew.OrganismFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Свойства видов организмов в виде примитивных массивов (индекс - номер вида).
+ * Используется колоночным представлением мира, в котором особь - это не объект, а индекс в массивах клетки.
+ */
+public class SpeciesTable {
+    //  Типы организмов (индекс - номер вида)
+    private final List<Class<? extends AbstractIslandOrganism>> types = new ArrayList<>();
+    private final String[] icon;
+    private final int[] lifeSpan;
+    private final double[] weight;
+    private final int[] minimumReproductiveAge;
+    private final int[] offspringCount;
+    private final int[] defaultNumberIndividualsInCell;
+    private final int[] maxNumberIndividualsInCell;
+    //  Животное ли (может есть и перемещаться)
+    private final boolean[] animal;
+    private final int[] maxSpeed;
+    private final int[] huntTryCount;
+    private final double[] foodRequirement;
+    private final double[] defaultFoodConsumption;
+    private final double[] movementFoodConsumption;
+    //  Вероятность (0..100) съесть вид j видом i
+    private final int[][] foodProbability;
+    //  Номера видов, которых может съесть вид i
+    private final int[][] preyList;
+
+    public SpeciesTable(OrganismFactory factory) {
+        //  Номера видов - те же, что назначила фабрика
+        int n = factory.getSpeciesCount();
+        for (int i = 0; i < n; i++) {
+            types.add(factory.getTypeBySpeciesId(i));
+        }
+        icon = new String[n];
+        lifeSpan = new int[n];
+        weight = new double[n];
+        minimumReproductiveAge = new int[n];
+        offspringCount = new int[n];
+        defaultNumberIndividualsInCell = new int[n];
+        maxNumberIndividualsInCell = new int[n];
+        animal = new boolean[n];
+        maxSpeed = new int[n];
+        huntTryCount = new int[n];
+        foodRequirement = new double[n];
+        defaultFoodConsumption = new double[n];
+        movementFoodConsumption = new double[n];
+        foodProbability = factory.getFoodProbabilityMatrix();
+        preyList = factory.getPreyIds();
+
+        for (int i = 0; i < n; i++) {
+            AbstractIslandOrganism prototype = factory.getPrototypeBySpeciesId(i);
+            icon[i] = prototype.getIcon();
+            lifeSpan[i] = prototype.getLifeSpan();
+            weight[i] = prototype.getWeight();
+            minimumReproductiveAge[i] = prototype.getMinimumReproductiveAge();
+            offspringCount[i] = prototype.getOffspringCount();
+            defaultNumberIndividualsInCell[i] = prototype.getDefaultNumberIndividualsInCell();
+            maxNumberIndividualsInCell[i] = prototype.getMaxNumberIndividualsInCell();
+            if (prototype instanceof AbstractIslandAnimal a) {
+                animal[i] = true;
+                maxSpeed[i] = a.getMaxSpeed();
+                huntTryCount[i] = a.getHuntTryCount();
+                foodRequirement[i] = a.getFoodRequirement();
+                defaultFoodConsumption[i] = a.getDefaultFoodConsumption();
+                movementFoodConsumption[i] = a.getMovementFoodConsumption();
+            }
+        }
+    }
+
+    /**
+     * Возвращает число видов
+     *
+     * @return
+     */
+    public int size() {
+        return types.size();
+    }
+
+    /**
+     * Возвращает тип организма по номеру вида
+     *
+     * @param species
+     * @return
+     */
+    public Class<? extends AbstractIslandOrganism> getType(int species) {
+        return types.get(species);
+    }
+
+    /**
+     * Возвращает иконку вида
+     *
+     * @param species
+     * @return
+     */
+    public String getIcon(int species) {
+        return icon[species];
+    }
+
+    public boolean isAnimal(int species) {
+        return animal[species];
+    }
+
+    public int getLifeSpan(int species) {
+        return lifeSpan[species];
+    }
+
+    public double getWeight(int species) {
+        return weight[species];
+    }
+
+    public int getMinimumReproductiveAge(int species) {
+        return minimumReproductiveAge[species];
+    }
+
+    public int getOffspringCount(int species) {
+        return offspringCount[species];
+    }
+
+    public int getDefaultNumberIndividualsInCell(int species) {
+        return defaultNumberIndividualsInCell[species];
+    }
+
+    public int getMaxNumberIndividualsInCell(int species) {
+        return maxNumberIndividualsInCell[species];
+    }
+
+    public int getMaxSpeed(int species) {
+        return maxSpeed[species];
+    }
+
+    public int getHuntTryCount(int species) {
+        return huntTryCount[species];
+    }
+
+    public double getFoodRequirement(int species) {
+        return foodRequirement[species];
+    }
+
+    public double getDefaultFoodConsumption(int species) {
+        return defaultFoodConsumption[species];
+    }
+
+    public double getMovementFoodConsumption(int species) {
+        return movementFoodConsumption[species];
+    }
+
+    /**
+     * Возвращает вероятность (0..100), с которой вид predator съедает вид prey
+     *
+     * @param predator
+     * @param prey
+     * @return
+     */
+    public int getFoodProbability(int predator, int prey) {
+        return foodProbability[predator][prey];
+    }
+
+    /**
+     * Возвращает номера видов, которых может съесть вид predator
+     *
+     * @param predator
+     * @return
+     */
+    public int[] getPreyList(int predator) {
+        return preyList[predator];
+    }
+}
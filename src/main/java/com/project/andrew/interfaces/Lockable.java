@@ -4,4 +4,6 @@ public interface Lockable {
     void unlock();
 
     boolean tryLock();
+
+    boolean isLocked();
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.project.andrew.interfaces;
+
+import com.project.andrew.StepScheduler;
+
+public interface SimulationStatistics {
+    long getStepCount();
+
+    long getPhaseNanos(StepScheduler.Phase phase);
+
+    long getProcessedOrganisms();
+}
@@ -0,0 +1,10 @@
+package com.project.andrew.interfaces;
+
+import java.util.concurrent.ExecutionException;
+
+public interface StepExecutor extends SimulationStatistics, AutoCloseable {
+    void runStep() throws ExecutionException, InterruptedException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,32 @@
+package com.project.andrew.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Событие JFR: неудачный захват особи (tryLock) - действие сервиса сорвано, особь занята другим потоком.
+ * Ожидание мониторов клеток записывает сам JDK (событие jdk.JavaMonitorEnter)
+ */
+@Name("com.project.andrew.LockFailure")
+@Label("Organism Lock Failure")
+@Category({"MyCrazyIsland", "Life Services"})
+@Description("Особь занята другим потоком, действие сервиса сорвано")
+@StackTrace(false)
+public class LockFailureEvent extends jdk.jfr.Event {
+    @Label("Service")
+    public String service;
+
+    @Label("Species")
+    public String species;
+
+    @Label("Row")
+    @Description("Строка клетки особи (-1, если особь в пути между клетками)")
+    public int row;
+
+    @Label("Column")
+    @Description("Столбец клетки особи (-1, если особь в пути между клетками)")
+    public int col;
+}
@@ -0,0 +1,21 @@
+package com.project.andrew.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR: фаза такта в планировщике тайлов
+ */
+@Name("com.project.andrew.Phase")
+@Label("Phase")
+@Category({"MyCrazyIsland"})
+@Description("Фаза такта (питание, размножение, перемещение, обновление)")
+public class PhaseEvent extends jdk.jfr.Event {
+    @Label("Step")
+    public long step;
+
+    @Label("Phase")
+    public String phase;
+}
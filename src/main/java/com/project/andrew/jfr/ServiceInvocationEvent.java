@@ -0,0 +1,32 @@
+package com.project.andrew.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие JFR: вызов жизненного сервиса для особи. Записываются только вызовы дольше порога
+ * (по умолчанию 1 мс, меняется настройкой threshold записи)
+ */
+@Name("com.project.andrew.ServiceInvocation")
+@Label("Life Service Invocation")
+@Category({"MyCrazyIsland", "Life Services"})
+@Description("Вызов сервиса питания, размножения или перемещения для особи")
+@Threshold("1 ms")
+public class ServiceInvocationEvent extends jdk.jfr.Event {
+    @Label("Service")
+    public String service;
+
+    @Label("Species")
+    public String species;
+
+    @Label("Row")
+    @Description("Строка клетки, на которой была особь при вызове")
+    public int row;
+
+    @Label("Column")
+    @Description("Столбец клетки, на которой была особь при вызове")
+    public int col;
+}
@@ -0,0 +1,26 @@
+package com.project.andrew.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR: такт игры (начало и конец - время события).
+ * Запись: java -XX:StartFlightRecording=filename=island.jfr ..., просмотр - JDK Mission Control
+ */
+@Name("com.project.andrew.Step")
+@Label("Step")
+@Category({"MyCrazyIsland"})
+@Description("Такт игры")
+public class StepEvent extends jdk.jfr.Event {
+    @Label("Step")
+    public int step;
+
+    @Label("Execution Mode")
+    public String mode;
+
+    @Label("Organisms")
+    @Description("Число особей на поле после такта")
+    public long organisms;
+}
@@ -0,0 +1,31 @@
+package com.project.andrew.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Событие JFR: обновление клеток в конце такта (увеличение возраста, удаление мертвых) на прямоугольном участке поля
+ */
+@Name("com.project.andrew.Sweep")
+@Label("Cell Sweep")
+@Category({"MyCrazyIsland"})
+@Description("Обновление клеток участка [rowFrom, rowTo) x [colFrom, colTo) в конце такта")
+public class SweepEvent extends jdk.jfr.Event {
+    @Label("Row From")
+    public int rowFrom;
+
+    @Label("Row To")
+    public int rowTo;
+
+    @Label("Column From")
+    public int colFrom;
+
+    @Label("Column To")
+    public int colTo;
+
+    @Label("Removed")
+    @Description("Число удаленных мертвых особей")
+    public int removed;
+}
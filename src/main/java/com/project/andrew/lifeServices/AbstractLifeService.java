@@ -0,0 +1,105 @@
+package com.project.andrew.lifeServices;
+
+import com.project.andrew.AbstractIslandOrganism;
+import com.project.andrew.Cell;
+import com.project.andrew.jfr.LockFailureEvent;
+import com.project.andrew.jfr.ServiceInvocationEvent;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общая часть жизненных сервисов: захват особей в соответствии с моделью конкурентного доступа
+ * и учет сорванных из-за занятости особей действий
+ */
+public abstract class AbstractLifeService {
+    //  Модель конкурентного доступа
+    @Getter
+    @Setter
+    private ConcurrencyMode concurrencyMode = ConcurrencyMode.ORGANISM_LOCKS;
+    //  Число действий, сорванных из-за того, что особь была занята другим потоком
+    private final LongAdder droppedActions = new LongAdder();
+
+    /**
+     * Захватывает особь для действия. При владении клеткой захват не нужен
+     *
+     * @param organism
+     * @return false, если особь занята (действие сорвано)
+     */
+    protected boolean acquire(AbstractIslandOrganism organism) {
+        if (concurrencyMode == ConcurrencyMode.CELL_OWNERSHIP || organism.tryLock()) {
+            return true;
+        }
+        droppedActions.increment();
+        LockFailureEvent event = new LockFailureEvent();
+        if (event.shouldCommit()) {
+            Cell cell = organism.getCurrentCell();
+            event.service = getClass().getSimpleName();
+            event.species = organism.getClass().getSimpleName();
+            event.row = cell == null ? -1 : cell.getRow();
+            event.col = cell == null ? -1 : cell.getCol();
+            event.commit();
+        }
+        return false;
+    }
+
+    /**
+     * Начинает событие JFR вызова сервиса
+     *
+     * @return
+     */
+    protected ServiceInvocationEvent beginInvocation() {
+        ServiceInvocationEvent event = new ServiceInvocationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Завершает событие JFR вызова сервиса (записывается, только если вызов дольше порога)
+     *
+     * @param event
+     * @param organism
+     * @param cell     клетка, на которой была особь при вызове
+     */
+    protected void commitInvocation(ServiceInvocationEvent event, AbstractIslandOrganism organism, Cell cell) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.service = getClass().getSimpleName();
+            event.species = organism.getClass().getSimpleName();
+            event.row = cell == null ? -1 : cell.getRow();
+            event.col = cell == null ? -1 : cell.getCol();
+            event.commit();
+        }
+    }
+
+    /**
+     * Освобождает особь, захваченную acquire
+     *
+     * @param organism
+     */
+    protected void release(AbstractIslandOrganism organism) {
+        if (concurrencyMode == ConcurrencyMode.ORGANISM_LOCKS) {
+            organism.unlock();
+        }
+    }
+
+    /**
+     * Занята ли особь другим действием (при владении клеткой - никогда)
+     *
+     * @param organism
+     * @return
+     */
+    protected boolean isBusy(AbstractIslandOrganism organism) {
+        return concurrencyMode == ConcurrencyMode.ORGANISM_LOCKS && organism.isLocked();
+    }
+
+    /**
+     * Возвращает число действий, сорванных из-за того, что особь была занята другим потоком
+     *
+     * @return
+     */
+    public long getDroppedActions() {
+        return droppedActions.sum();
+    }
+}
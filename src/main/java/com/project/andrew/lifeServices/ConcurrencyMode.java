@@ -0,0 +1,17 @@
+package com.project.andrew.lifeServices;
+
+/**
+ * Модель конкурентного доступа к особям в жизненных сервисах
+ */
+public enum ConcurrencyMode {
+    /**
+     * Каждая особь захватывается через tryLock. Нужна, когда особи одной клетки обрабатывают разные потоки
+     * (задача на каждую особь). Если особь занята, действие срывается
+     */
+    ORGANISM_LOCKS,
+    /**
+     * Владелец - клетка: в каждой фазе клетку изменяет только один поток (тайловый планировщик),
+     * особи не блокируются
+     */
+    CELL_OWNERSHIP
+}
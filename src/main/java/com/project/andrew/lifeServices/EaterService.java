@@ -2,70 +2,163 @@ package com.project.andrew.lifeServices;
 
 import com.project.andrew.AbstractIslandAnimal;
 import com.project.andrew.AbstractIslandOrganism;
+import com.project.andrew.Cell;
+import com.project.andrew.PreySampler;
 import com.project.andrew.interfaces.Eater;
-import com.project.andrew.Utils;
+import com.project.andrew.columnar.ColumnarCell;
+import com.project.andrew.columnar.SpeciesTable;
 import com.project.andrew.exceptions.OrganismlTypeMismatchException;
+import com.project.andrew.tracing.Tracer;
+import lombok.Setter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 
-public class EaterService implements Consumer<Eater> {
-    //  Карта карт организов и его потенциальных жертв
-    private final Map<Class<? extends AbstractIslandOrganism>, Map<Class<? extends AbstractIslandOrganism>, Integer>> foodMap;
+public class EaterService extends AbstractLifeService implements Consumer<Eater> {
+    //  Вероятность (0..100), с которой вид [хищник] съедает вид [жертва], по номерам видов
+    private final int[][] foodProbability;
+    //  Номера видов-жертв для каждого вида
+    private final int[][] preyIds;
+    //  Трофический уровень вида: 0 - вид никого не ест, иначе на единицу выше наибольшего уровня его жертв
+    private final int[] trophicLevel;
+    //  Пауза между попытками охоты (мс). Имеет смысл, когда жертву могут держать заблокированной другие потоки
+    @Setter
+    private long huntTryPauseMillis = 100;
+    //  Состояние прохода охоты по клетке (свое у каждого потока)
+    private final ThreadLocal<CellHunt> cellHunt;
 
-    public EaterService(Map<Class<? extends AbstractIslandOrganism>, Map<Class<? extends AbstractIslandOrganism>, Integer>> food) {
-        this.foodMap = food;
+    /**
+     * Состояние прохода охоты по клетке: хищники, число живых особей по видам, таблицы выбора жертв видов-хищников
+     * и живые особи видов, на которых уже охотились (съеденная особь убирается перестановкой последней на ее место)
+     */
+    private static final class CellHunt {
+        private final List<AbstractIslandAnimal> predators = new ArrayList<>();
+        private final List<AbstractIslandOrganism> eaten = new ArrayList<>();
+        private final int[] live;
+        //  Таблицы выбора жертв по номеру вида-хищника (создаются при первой охоте вида)
+        private final PreySampler[] samplers;
+        //  Версия чисел live: меняется в начале прохода и при каждом съедении
+        private long version = 0;
+        private final AbstractIslandOrganism[][] prey;
+        //  Число живых особей в prey[вид], -1 - особи вида еще не скопированы
+        private final int[] preySize;
+        //  Сколько особей было скопировано в prey[вид] (для очистки ссылок)
+        private final int[] loaded;
+
+        private CellHunt(int speciesCount) {
+            live = new int[speciesCount];
+            samplers = new PreySampler[speciesCount];
+            prey = new AbstractIslandOrganism[speciesCount][0];
+            preySize = new int[speciesCount];
+            loaded = new int[speciesCount];
+        }
+    }
+
+    public EaterService(int[][] foodProbability, int[][] preyIds) {
+        this.foodProbability = foodProbability;
+        this.preyIds = preyIds;
+        this.trophicLevel = trophicLevels(preyIds);
+        this.cellHunt = ThreadLocal.withInitial(() -> new CellHunt(preyIds.length));
     }
 
     /**
-     * Возвращает "пищевую карту" для огранизма type
+     * Вычисляет трофические уровни видов по спискам жертв: длина самой длинной пищевой цепочки вниз от вида.
+     * Поедание своего вида не учитывается; если виды едят друг друга по кругу, ребро, замыкающее круг, отбрасывается
      *
-     * @param type
+     * @param preyIds
      * @return
      */
-    private Map<Class<? extends AbstractIslandOrganism>, Integer> getFoodConsumptionProbabilityForOrganism(Class<? extends AbstractIslandOrganism> type) {
-        return foodMap.get(type);
+    static int[] trophicLevels(int[][] preyIds) {
+        int[] level = new int[preyIds.length];
+        //  0 - не вычислен, 1 - вычисляется, 2 - вычислен
+        byte[] state = new byte[preyIds.length];
+        for (int species = 0; species < preyIds.length; species++) {
+            computeTrophicLevel(species, preyIds, level, state);
+        }
+        return level;
+    }
+
+    private static int computeTrophicLevel(int species, int[][] preyIds, int[] level, byte[] state) {
+        if (state[species] == 2) {
+            return level[species];
+        }
+        state[species] = 1;
+        int result = 0;
+        for (int prey : preyIds[species]) {
+            if (prey != species && state[prey] != 1) {
+                result = Math.max(result, computeTrophicLevel(prey, preyIds, level, state) + 1);
+            }
+        }
+        level[species] = result;
+        state[species] = 2;
+        return result;
     }
 
     /**
-     * Создаем список потенциальных "жертв" из особей на клетке, которых можно съесть (их типы организмов содержатся в Map food)
+     * Возвращает трофический уровень вида
      *
-     * @param obj
+     * @param speciesId
      * @return
      */
-    private List<? extends AbstractIslandOrganism> getPreyList(AbstractIslandOrganism obj) {
-        ArrayList<AbstractIslandOrganism> preyList = obj.getCurrentCell().getOrganismList().stream().filter(item -> (foodMap.get(obj.getClass()).containsKey(item.getClass()) && !item.lock.isLocked())).collect(Collectors.toCollection(ArrayList::new));
-        return preyList.isEmpty() ? null : preyList;
+    public int getTrophicLevel(int speciesId) {
+        return trophicLevel[speciesId];
     }
 
     /**
-     * Возвращает "жертву" для поедания
+     * Одна попытка охоты.
+     * Жертва - случайная особь из всех особей на клетке, которых можно съесть (их виды содержатся в preyIds),
+     * охота удачна с вероятностью из foodProbability. Выбор делается одним розыгрышем по таблице клетки (PreySampler),
+     * без построения списка жертв. Растения, хранимые общим запасом, съедаются из запаса без блокировки особи
      *
      * @param obj
-     * @return
+     * @return true, если охота за такт закончена (жертва поймана)
      */
-    private AbstractIslandOrganism getPrey(AbstractIslandOrganism obj) {
-        var preyList = getPreyList(obj);
-        //  Из этого списка случайным образом выбираем "жертву"
-        if (preyList == null) {
-            return null;
+    private boolean hunt(AbstractIslandOrganism obj) {
+        Cell cell = obj.getCurrentCell();
+        var random = cell.getRandom();
+        AbstractIslandOrganism prey;
+        boolean caught;
+        synchronized (cell) {
+            PreySampler sampler = cell.getPreySampler(obj.getSpeciesId(), preyIds[obj.getSpeciesId()], foodProbability[obj.getSpeciesId()]);
+            int outcome = sampler.draw(random);
+            if (outcome < 0) {
+                Tracer.huntAttempt(obj, null, false);
+                return false;
+            }
+            int preyId = sampler.getPreyId(outcome);
+            caught = sampler.isCaught(outcome);
+            if (cell.isPlantStock(preyId)) {
+                //  В трассировке растение из запаса представлено прототипом вида
+                AbstractIslandOrganism plant = cell.getPlantPrototype(preyId);
+                Tracer.huntAttempt(obj, plant, caught);
+                if (caught && cell.consumePlant((AbstractIslandAnimal) obj, preyId, random)) {
+                    Tracer.kill(obj, plant);
+                }
+                return caught;
+            }
+            //  Из особей выбранного вида случайным образом выбираем "жертву"
+            prey = cell.getOrganism(preyId, random.nextInt(cell.getOrganismCount(preyId)));
         }
+        Tracer.huntAttempt(obj, prey, caught);
 
-        var prey = preyList.get(ThreadLocalRandom.current().nextInt(preyList.size()));
-        Utils.showText(obj.getName() + " нашел " + prey.getName());
-
-        int foodConsumptionProbability = ThreadLocalRandom.current().nextInt(100);
-        //  Если вероятность наступила, то возвращаем "жертву для съедания"
-        if (foodConsumptionProbability < getFoodConsumptionProbabilityForOrganism(obj.getClass()).get(prey.getClass())) {
-            return prey;
-        } else {
-            Utils.showText(obj.getName() + " не смог съесть " + prey.getName() + ". Неудачная охота");
-            return null;
+        //  Если вероятность наступила, то пытаемся съесть "жертву"
+        if (!caught || !acquire(prey)) {
+            return false;
+        }
+        try {
+            //  Мертвых не едим
+            if (!prey.isDead() && ((Eater) obj).eat(prey)) {
+                Tracer.kill(obj, prey);
+            }
+        } finally {
+            release(prey);
         }
+        return true;
     }
 
     private void eatTask(AbstractIslandOrganism x) {
@@ -74,60 +167,227 @@ public class EaterService implements Consumer<Eater> {
         }
         int attempts = 0;
 
-        Utils.showText(x.getName() + " готовится к охоте");
-
-        if (x.tryLock()) {
+        if (acquire(x)) {
             try {
                 if (x.isDead()) {
                     return;
                 }
-                Utils.showText(x.getName() + " заблокирован как хищник");
                 //  У организма есть huntTryCount попыток поохотиться
                 while (attempts < ((AbstractIslandAnimal) x).getHuntTryCount()) {
-                    Utils.showText(x.getName() + " попытка-" + (attempts + 1));
-                    Utils.showText(x.getName() + " ищет жертву ...");
-                    var prey = getPrey(x);
-                    if (prey != null && prey.tryLock()) {
-                        Utils.showText(prey.getName() + " заблокирован как жертва от " + x.getName());
-                        try {
-                            if (!prey.isDead()) {
-                                Utils.showText(x.getName() + " начинает есть " + prey.getName());
-
-                                if (((Eater) x).eat(prey)) {
-                                    Utils.showText(x.getName() + " съел " + prey.getName());
-                                } else {
-                                    Utils.showText(prey.getName() + " не удалось съесть " + prey.getName());
-                                }
-                            } else {
-                                Utils.showText(prey.getName() + " уже умер. Мертвых не едим!");
-                            }
-                        } finally {
-                            Utils.showText(prey.getName() + " разблокирован как жертва");
-                            prey.unlock();
-                            return;
-                        }
-
+                    if (hunt(x)) {
+                        return;
                     }
                     attempts++;
-                    try {
-                        Thread.sleep(100); // Пауза между попытками
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
+                    if (huntTryPauseMillis > 0) {
+                        try {
+                            Thread.sleep(huntTryPauseMillis); // Пауза между попытками
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
                     }
                 }
 
             } finally {
-                Utils.showText(x.getName() + " разблокирован как хищник");
-                x.unlock();
+                release(x);
             }
+        }
+    }
 
-        } else {
-            Utils.showText(x.getName() + " уже кем-то заблокирован для каких-то дел");
+    /**
+     * Питание всех хищников клетки за один проход (клеткой владеет один поток, особи не блокируются, пауз нет).
+     * Хищники охотятся в порядке убывания трофического уровня (сначала высшие хищники); внутри уровня - в порядке
+     * перемешанного снимка. Каждый хищник делает до huntTryCount попыток: жертва выбирается случайно из живых особей
+     * видов-жертв на клетке и съедается с вероятностью из foodProbability, не более одной жертвы за такт.
+     * Вид жертвы и исход охоты разыгрываются по таблице PreySampler, построенной по числам живых особей прохода
+     * (таблица вида-хищника перестраивается только после съедения).
+     * Съеденные особи сразу лишаются жизни (их не выберет следующий хищник и они не охотятся сами),
+     * а с клетки снимаются вместе в конце прохода
+     *
+     * @param cell
+     * @param snapshot перемешанный снимок особей клетки на начало фазы
+     */
+    public void eatCell(Cell cell, List<AbstractIslandOrganism> snapshot) {
+        CellHunt hunt = cellHunt.get();
+        List<AbstractIslandAnimal> predators = hunt.predators;
+        for (AbstractIslandOrganism x : snapshot) {
+            if (x instanceof AbstractIslandAnimal animal && !x.isDead() && preyIds[x.getSpeciesId()].length > 0) {
+                predators.add(animal);
+            }
+        }
+        if (predators.isEmpty()) {
+            return;
+        }
+        //  Сортировка устойчива: внутри уровня остается случайный порядок снимка
+        predators.sort(Comparator.comparingInt((AbstractIslandAnimal x) -> trophicLevel[x.getSpeciesId()]).reversed());
+        cell.copyOrganismCounts(hunt.live, 0);
+        hunt.version++;
+        Arrays.fill(hunt.preySize, -1);
+        var random = cell.getRandom();
+        try {
+            for (AbstractIslandAnimal predator : predators) {
+                //  Хищник мог быть съеден хищником более высокого уровня
+                if (predator.isDead()) {
+                    continue;
+                }
+                var event = beginInvocation();
+                huntInCell(cell, predator, hunt, random);
+                commitInvocation(event, predator, cell);
+            }
+            if (!hunt.eaten.isEmpty()) {
+                cell.removeEaten(hunt.eaten);
+            }
+        } finally {
+            //  Буферы потока не должны удерживать особей
+            predators.clear();
+            hunt.eaten.clear();
+            for (int species = 0; species < hunt.prey.length; species++) {
+                if (hunt.preySize[species] >= 0) {
+                    Arrays.fill(hunt.prey[species], 0, hunt.loaded[species], null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Охота одного хищника в проходе по клетке
+     *
+     * @param cell
+     * @param predator
+     * @param hunt
+     * @param random
+     */
+    private void huntInCell(Cell cell, AbstractIslandAnimal predator, CellHunt hunt, RandomGenerator random) {
+        int speciesId = predator.getSpeciesId();
+        int[] live = hunt.live;
+        PreySampler sampler = hunt.samplers[speciesId];
+        if (sampler == null) {
+            sampler = new PreySampler(preyIds[speciesId], foodProbability[speciesId]);
+            hunt.samplers[speciesId] = sampler;
+        }
+        for (int attempt = 0; attempt < predator.getHuntTryCount(); attempt++) {
+            if (!sampler.isActual(hunt.version)) {
+                sampler.rebuild(live, hunt.version);
+            }
+            int outcome = sampler.draw(random);
+            if (outcome < 0) {
+                Tracer.huntAttempt(predator, null, false);
+                return;
+            }
+            int preyId = sampler.getPreyId(outcome);
+            boolean caught = sampler.isCaught(outcome);
+            if (cell.isPlantStock(preyId)) {
+                //  В трассировке растение из запаса представлено прототипом вида
+                AbstractIslandOrganism plant = cell.getPlantPrototype(preyId);
+                Tracer.huntAttempt(predator, plant, caught);
+                if (caught) {
+                    if (cell.consumePlant(predator, preyId, random)) {
+                        live[preyId]--;
+                        hunt.version++;
+                        Tracer.kill(predator, plant);
+                    }
+                    return;
+                }
+                continue;
+            }
+            //  Из живых особей выбранного вида случайным образом выбираем "жертву"
+            AbstractIslandOrganism[] candidates = loadPrey(cell, hunt, preyId);
+            int index = random.nextInt(hunt.preySize[preyId]);
+            AbstractIslandOrganism prey = candidates[index];
+            Tracer.huntAttempt(predator, prey, caught);
+            //  Смотрим, чтобы не съел сам себя
+            if (caught && prey != predator) {
+                predator.consume(prey);
+                candidates[index] = candidates[--hunt.preySize[preyId]];
+                live[preyId]--;
+                hunt.version++;
+                hunt.eaten.add(prey);
+                Tracer.kill(predator, prey);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Возвращает живых особей вида на клетке, копируя их при первой охоте на вид в проходе
+     *
+     * @param cell
+     * @param hunt
+     * @param speciesId
+     * @return
+     */
+    private static AbstractIslandOrganism[] loadPrey(Cell cell, CellHunt hunt, int speciesId) {
+        if (hunt.preySize[speciesId] < 0) {
+            int count = cell.getOrganismCount(speciesId);
+            if (hunt.prey[speciesId].length < count) {
+                hunt.prey[speciesId] = new AbstractIslandOrganism[Math.max(count, hunt.prey[speciesId].length * 2)];
+            }
+            int size = cell.copyOrganisms(speciesId, hunt.prey[speciesId]);
+            hunt.preySize[speciesId] = size;
+            hunt.loaded[speciesId] = size;
+        }
+        return hunt.prey[speciesId];
+    }
+
+    /**
+     * Питание особи в колоночном представлении мира (особь - индекс index вида species на клетке cell).
+     * Как и в объектной модели: до huntTryCount попыток, в каждой попытке случайно выбирается одна из живых
+     * особей-жертв на клетке и съедается с вероятностью из foodConsumptionProbability. Не более одной жертвы за такт.
+     *
+     * @param table
+     * @param cell
+     * @param species
+     * @param index
+     */
+    public void eat(SpeciesTable table, ColumnarCell cell, int species, int index) {
+        if (!table.isAnimal(species) || !cell.isAlive(species, index)) {
+            return;
+        }
+        int[] preyList = table.getPreyList(species);
+        if (preyList.length == 0) {
+            return;
+        }
+        var random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < table.getHuntTryCount(species); attempt++) {
+            int total = 0;
+            for (int prey : preyList) {
+                total += cell.aliveCount(prey);
+            }
+            if (total == 0) {
+                return;
+            }
+            //  Выбираем вид жертвы пропорционально числу ее живых особей, а затем саму особь
+            int r = random.nextInt(total);
+            int preySpecies = preyList[0];
+            for (int prey : preyList) {
+                r -= cell.aliveCount(prey);
+                if (r < 0) {
+                    preySpecies = prey;
+                    break;
+                }
+            }
+            int preyIndex;
+            do {
+                preyIndex = random.nextInt(cell.size(preySpecies));
+            } while (!cell.isAlive(preySpecies, preyIndex));
+            //  Смотрим, чтобы не съел сам себя
+            if (preySpecies == species && preyIndex == index) {
+                return;
+            }
+            if (random.nextInt(100) < table.getFoodProbability(species, preySpecies)) {
+                cell.kill(preySpecies, preyIndex);
+                double satiation = Math.min(cell.getSatiation(species, index) + table.getWeight(preySpecies), table.getFoodRequirement(species));
+                cell.setSatiation(species, index, (float) satiation);
+                return;
+            }
         }
     }
 
     @Override
     public void accept(Eater eater) {
-        eatTask((AbstractIslandOrganism) eater);
+        var organism = (AbstractIslandOrganism) eater;
+        Cell cell = organism.getCurrentCell();
+        var event = beginInvocation();
+        eatTask(organism);
+        commitInvocation(event, organism, cell);
     }
 }
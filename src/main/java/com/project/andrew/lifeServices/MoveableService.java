@@ -2,52 +2,41 @@ package com.project.andrew.lifeServices;
 
 import com.project.andrew.*;
 import com.project.andrew.AbstractIslandAnimal;
+import com.project.andrew.columnar.ColumnarCell;
+import com.project.andrew.columnar.ColumnarField;
+import com.project.andrew.columnar.SpeciesTable;
 import com.project.andrew.exceptions.OrganismlNotInCellException;
 import com.project.andrew.exceptions.OrganismlTypeMismatchException;
 import com.project.andrew.interfaces.Moveable;
+import com.project.andrew.tracing.DeathCause;
+import com.project.andrew.tracing.Tracer;
+import lombok.Getter;
+import lombok.Setter;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 
-public class MoveableService implements Consumer<Moveable> {
+public class MoveableService extends AbstractLifeService implements Consumer<Moveable> {
     //  Карта острова
     private Field field;
+    //  Двухфазное перемещение: особь только ставится в очередь клетки назначения, а прием очередей
+    //  выполняет планировщик после окончания фазы (см. Cell.acceptMigrants). false - особь переходит сразу
+    @Getter
+    @Setter
+    private boolean deferredMigration = false;
 
     public MoveableService(Field field) {
         this.field = field;
     }
 
     /**
-     * Возвращает список список соседних клеток, возможных для перемещения
-     *
-     * @param x
-     * @param field
-     * @return
+     * Сервис для колоночного представления мира (поле передается в метод move)
      */
-    private List<Cell> getAdjacentCells(Moveable x, Field field) {
-        List<Cell> adjacentCells = new CopyOnWriteArrayList<>();
-        int row = ((AbstractIslandAnimal) x).getCurrentCell().getRow();
-        int col = ((AbstractIslandAnimal) x).getCurrentCell().getCol();
-
-        if (row > 0) {
-            adjacentCells.add(field.getCell(row - 1, col));
-        }
-        if (row < field.getRowCount() - 1) {
-            adjacentCells.add(field.getCell(row + 1, col));
-        }
-        if (col > 0) {
-            adjacentCells.add(field.getCell(row, col - 1));
-        }
-        if (col < field.getColCount() - 1) {
-            adjacentCells.add(field.getCell(row, col + 1));
-        }
-
-        return adjacentCells;
+    public MoveableService() {
+        this(null);
     }
 
-
     private void moveTask(AbstractIslandAnimal x) {
         if (!(x instanceof Moveable)) {
             throw new OrganismlTypeMismatchException();
@@ -56,7 +45,7 @@ public class MoveableService implements Consumer<Moveable> {
             return;
         }
 
-        if (x.tryLock()) {
+        if (acquire(x)) {
             try {
                 if (x.isDead()) {
                     return;
@@ -65,43 +54,169 @@ public class MoveableService implements Consumer<Moveable> {
                     throw new OrganismlNotInCellException();
                 }
 
-                Utils.showText(x.getName() + " заблокирован для передвижения");
-
                 //  Число перемещений (от 0 до MAX_SPEED-1)
-                int stepCount = ThreadLocalRandom.current().nextInt(x.getMaxSpeed());
+                int stepCount = x.getCurrentCell().getRandom().nextInt(x.getMaxSpeed());
 
                 if (stepCount == 0) {
-                    Utils.showText(x.getName() + " передумал перемещаться");
+                    return;
+                }
+
+                if (deferredMigration) {
+                    planMigration(x, stepCount);
+                    return;
                 }
 
-                List<Cell> adjacentCells;
                 for (int i = 0; i < stepCount; i++) {
-                    adjacentCells = getAdjacentCells(x, field);
-                    if (adjacentCells.isEmpty()) {
+                    Cell currentCell = x.getCurrentCell();
+                    int target = getAdjacentCell(currentCell.getRow(), currentCell.getCol(), field.getRowCount(), field.getColCount(), currentCell.getRandom());
+                    if (target < 0) {
                         return;
                     }
-
-                    Utils.showText(x.getName() + " решил переместиться из клетки " + x.getCurrentCell().showCellPosition());
-
-                    Cell targetCell = adjacentCells.get(ThreadLocalRandom.current().nextInt(adjacentCells.size()));
-                    synchronized (targetCell) {
-                        if (x.move(targetCell)) {
-                            Utils.showText(x.getName() + " переместился в клетку " + x.getCurrentCell().showCellPosition());
+                    //  Выделяется только участок выбранной клетки, а не участки всех соседей
+                    Cell targetCell = field.getCell(target / field.getColCount(), target % field.getColCount());
+                    //  Мониторы исходной клетки и клетки назначения берутся по очереди внутри move, а не вложенно,
+                    //  иначе встречные перемещения между соседними клетками могут взаимно заблокироваться
+                    Cell sourceCell = x.getCurrentCell();
+                    if (x.move(targetCell)) {
+                        Tracer.move(x, sourceCell.getRow(), sourceCell.getCol(), targetCell.getRow(), targetCell.getCol());
+                    } else {
+                        //  Особь уже ушла с исходной клетки, если погибла из-за нехватки места на клетке назначения
+                        if (x.getCurrentCell() == null) {
+                            Tracer.death(x, DeathCause.NO_ROOM, targetCell.getRow(), targetCell.getCol());
                         } else {
-                            Utils.showText(x.getName() + " нее смог переместиться в клетку " + targetCell.showCellPosition() + (x.isDead() ? " (умер)" : ""));
-                            break;
+                            Tracer.death(x, DeathCause.EXHAUSTED_ON_MOVE, sourceCell.getRow(), sourceCell.getCol());
                         }
+                        break;
                     }
                 }
             } finally {
-                x.unlock();
-                Utils.showText(x.getName() + " разблокирован после передвижения");
+                release(x);
+            }
+        }
+    }
+
+    /**
+     * Прокладывает маршрут из stepCount переходов по координатам, не трогая промежуточные клетки.
+     * Каждый переход уменьшает насыщение; умершая в пути особь остается на исходной клетке до ее обновления.
+     * Дошедшая особь уходит с исходной клетки и ставится в очередь клетки назначения
+     *
+     * @param x
+     * @param stepCount
+     */
+    private void planMigration(AbstractIslandAnimal x, int stepCount) {
+        Cell source = x.getCurrentCell();
+        int row = source.getRow();
+        int col = source.getCol();
+        var random = source.getRandom();
+        for (int i = 0; i < stepCount; i++) {
+            int target = getAdjacentCell(row, col, field.getRowCount(), field.getColCount(), random);
+            if (target < 0) {
+                break;
+            }
+            row = target / field.getColCount();
+            col = target % field.getColCount();
+            if (!x.spendMovementFood()) {
+                //  Маршрут только проложен: особь не покидала исходную клетку и погибает на ней
+                Tracer.death(x, DeathCause.EXHAUSTED_ON_MOVE, source.getRow(), source.getCol());
+                return;
             }
         }
+        if (row == source.getRow() && col == source.getCol()) {
+            return;
+        }
+        Cell targetCell = field.getCell(row, col);
+        x.migrate(targetCell);
+        Tracer.move(x, source.getRow(), source.getCol(), row, col);
+    }
+
+    /**
+     * Перемещение особи в колоночном представлении мира (особь - индекс index вида species на клетке cell).
+     * Маршрут из 0..maxSpeed-1 переходов на соседние клетки прокладывается сразу, каждый переход уменьшает насыщение.
+     * Особь уходит с исходной клетки и ставится в очередь клетки назначения; ограничение
+     * maxNumberIndividualsInCell проверяется при приеме очереди (см. ColumnarEngine).
+     *
+     * @param field
+     * @param cell
+     * @param species
+     * @param index
+     */
+    public void move(ColumnarField field, ColumnarCell cell, int species, int index) {
+        SpeciesTable table = field.getTable();
+        if (!table.isAnimal(species) || table.getMaxSpeed(species) == 0 || !cell.isAlive(species, index)) {
+            return;
+        }
+        var random = ThreadLocalRandom.current();
+        //  Число перемещений (от 0 до MAX_SPEED-1)
+        int stepCount = random.nextInt(table.getMaxSpeed(species));
+        if (stepCount == 0) {
+            return;
+        }
+        int row = cell.getRow();
+        int col = cell.getCol();
+        float satiation = cell.getSatiation(species, index);
+        for (int i = 0; i < stepCount; i++) {
+            //  Выбираем одну из соседних клеток
+            int target = getAdjacentCell(row, col, field.getRowCount(), field.getColCount(), random);
+            if (target < 0) {
+                break;
+            }
+            row = target / field.getColCount();
+            col = target % field.getColCount();
+            //  В результате перемещения уменьшается энергия
+            satiation -= (float) table.getMovementFoodConsumption(species);
+            if (satiation <= 0) {
+                cell.kill(species, index);
+                return;
+            }
+        }
+        if (row == cell.getRow() && col == cell.getCol()) {
+            cell.setSatiation(species, index, satiation);
+            return;
+        }
+        field.getCell(row, col).offerMigrant(species, cell.getAge(species, index), satiation);
+        cell.kill(species, index);
+    }
+
+    /**
+     * Возвращает номер (row * colCount + col) случайной соседней клетки или -1, если соседей нет
+     *
+     * @param row
+     * @param col
+     * @param rowCount
+     * @param colCount
+     * @param random
+     * @return
+     */
+    private static int getAdjacentCell(int row, int col, int rowCount, int colCount, RandomGenerator random) {
+        //  Соседи в порядке: сверху, снизу, слева, справа
+        boolean up = row > 0;
+        boolean down = row < rowCount - 1;
+        boolean left = col > 0;
+        boolean right = col < colCount - 1;
+        int count = (up ? 1 : 0) + (down ? 1 : 0) + (left ? 1 : 0) + (right ? 1 : 0);
+        if (count == 0) {
+            return -1;
+        }
+        int k = random.nextInt(count);
+        if (up && k-- == 0) {
+            return (row - 1) * colCount + col;
+        }
+        if (down && k-- == 0) {
+            return (row + 1) * colCount + col;
+        }
+        if (left && k-- == 0) {
+            return row * colCount + col - 1;
+        }
+        return row * colCount + col + 1;
     }
 
     @Override
     public void accept(Moveable moveable) {
-        moveTask((AbstractIslandAnimal) moveable);
+        var animal = (AbstractIslandAnimal) moveable;
+        //  Клетка до перемещения
+        Cell cell = animal.getCurrentCell();
+        var event = beginInvocation();
+        moveTask(animal);
+        commitInvocation(event, animal, cell);
     }
 }
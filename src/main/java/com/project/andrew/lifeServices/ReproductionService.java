@@ -1,52 +1,53 @@
 package com.project.andrew.lifeServices;
 
 import com.project.andrew.AbstractIslandOrganism;
-import com.project.andrew.Utils;
+import com.project.andrew.Cell;
+import com.project.andrew.PlantStock;
+import com.project.andrew.columnar.ColumnarCell;
+import com.project.andrew.columnar.SpeciesTable;
 import com.project.andrew.exceptions.*;
+import com.project.andrew.tracing.Tracer;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
 
-public class ReproductionService implements Consumer<AbstractIslandOrganism> {
-    //  Карта прототипов организмов для воспроизводства
-    private final Map<Class<? extends AbstractIslandOrganism>, AbstractIslandOrganism> prototypes;
+public class ReproductionService extends AbstractLifeService implements Consumer<AbstractIslandOrganism> {
+    //  Прототипы организмов для воспроизводства (индекс - номер вида)
+    private final AbstractIslandOrganism[] prototypes;
 
-    public ReproductionService(Map<Class<? extends AbstractIslandOrganism>, AbstractIslandOrganism> prototypes) {
+    public ReproductionService(AbstractIslandOrganism[] prototypes) {
         this.prototypes = prototypes;
     }
 
     /**
-     * Создает организм по переданному типу
+     * Возвращает прототип организма по номеру вида. Потомки клонируются из прототипа, а не из родителя
      *
-     * @param type
+     * @param speciesId
      * @return
-     * @throws Exception
+     * @throws OrganismPrototypeNotFound
      */
-    private AbstractIslandOrganism createOrganism(Class<? extends AbstractIslandOrganism> type) throws OrganismClassIsNullException, OrganismPrototypeNotFound, CloneNotSupportedException {
-        if (type == null) {
-            throw new OrganismClassIsNullException();
-        }
-        var organism = prototypes.get(type);
-        if (organism == null) {
+    private AbstractIslandOrganism getPrototype(int speciesId) throws OrganismPrototypeNotFound {
+        if (speciesId < 0 || speciesId >= prototypes.length || prototypes[speciesId] == null) {
             throw new OrganismPrototypeNotFound();
         }
-        return organism.clone();
+        return prototypes[speciesId];
     }
 
     /**
      * Размножение. Возвращает список детенышей, в количестве OFFSPRING_COUNT, определенных в свойствах данного организма
      *
      * @param prototype
+     * @param random
      * @return
      * @throws CloneNotSupportedException
      */
-    private List<AbstractIslandOrganism> getOffspringList(AbstractIslandOrganism prototype) throws CloneNotSupportedException {
+    private List<AbstractIslandOrganism> getOffspringList(AbstractIslandOrganism prototype, RandomGenerator random) throws CloneNotSupportedException {
 
         //  Число детенышей (от 0 до OFFSPRING_COUNT)
-        int offspringCount = ThreadLocalRandom.current().nextInt(prototype.getOffspringCount() + 1);
+        int offspringCount = random.nextInt(prototype.getOffspringCount() + 1);
         ArrayList<AbstractIslandOrganism> children = new ArrayList<>();
         for (int i = 0; i < offspringCount; i++) {
             children.add(prototype.clone());
@@ -54,71 +55,141 @@ public class ReproductionService implements Consumer<AbstractIslandOrganism> {
         return children;
     }
 
+    /**
+     * Ищет партнера для размножения: живую, взрослую и не занятую особь того же вида на клетке.
+     * Просмотр особей вида начинается со случайной позиции, список кандидатов не строится
+     *
+     * @param x
+     * @return партнер или null, если подходящей особи на клетке нет
+     */
+    private AbstractIslandOrganism findPartner(AbstractIslandOrganism x) {
+        Cell cell = x.getCurrentCell();
+        synchronized (cell) {
+            int speciesId = x.getSpeciesId();
+            int size = cell.getOrganismCount(speciesId);
+            if (size < 2) {
+                return null;
+            }
+            int start = cell.getRandom().nextInt(size);
+            for (int i = 0; i < size; i++) {
+                int index = start + i < size ? start + i : start + i - size;
+                AbstractIslandOrganism s = cell.getOrganism(speciesId, index);
+                if (s != x && !s.isDead() && s.getAge() >= s.getMinimumReproductiveAge() && !isBusy(s)) {
+                    return s;
+                }
+            }
+            return null;
+        }
+    }
+
     private void reproductionTask(AbstractIslandOrganism x) {
         if (x.getAge() < x.getMinimumReproductiveAge()) {
             return;
         }
-        if (x.tryLock()) {
+        if (acquire(x)) {
             try {
                 if (x.isDead()) {
                     return;
                 }
-                Utils.showText(x.getName() + " заблокирован для размножения и ищет партнера...");
-                AbstractIslandOrganism partner = null;
-                //  Ищем партнера для размножения
-                synchronized (x.getCurrentCell()) {
-                    //  Создаем список особей данного типа, живых и незаблокированных (не занятых)
-                    try {
-                        var partnerList = x.getCurrentCell().getOrganismPerCell(x.getClass())
-                                .stream()
-                                .filter(s -> (s != x && !s.isDead() && (s.getAge() >= s.getMinimumReproductiveAge()) && !s.lock.isLocked())).toList();
-                        if (partnerList == null || partnerList.size() == 0) {
-                            Utils.showText(x.getName() + " не нашел партнера для размножения");
-                            return;
-                        }
-                        //  И выбираем случайным образом партнера
-                        partner = partnerList.get(ThreadLocalRandom.current().nextInt(partnerList.size()));
-
-                    } catch (Exception e) {
-                        System.out.println(e);
-                    }
+                AbstractIslandOrganism partner = findPartner(x);
+                if (partner == null) {
+                    return;
                 }
 
-                if (partner.tryLock()) {
+                if (acquire(partner)) {
                     try {
-                        Utils.showText(x.getName() + " нашел " + partner.getName() + " и начинает размножение");
-                        Utils.showText(partner.getName() + " заблокирован как партнер");
-
-                        var prototype = createOrganism(x.getClass());
-                        List<AbstractIslandOrganism> list = getOffspringList(prototype);
+                        var prototype = getPrototype(x.getSpeciesId());
+                        List<AbstractIslandOrganism> list = getOffspringList(prototype, x.getCurrentCell().getRandom());
                         int offspringListCount = list.size();
                         int count = x.reproduction(list);
-                        if (count == 0) {
-                            Utils.showText(x.getName() + " потерял потомков при размножении");
-                        } else {
-                            Utils.showText(x.getName() + " воспроизвел " + offspringListCount + " потомков, выжило - " + count);
-                        }
+                        Tracer.birth(x, offspringListCount, count);
                     } finally {
-                        partner.unlock();
-                        Utils.showText(partner.getName() + " разблокирован как партнер");
+                        release(partner);
                     }
-                } else {
-                    Utils.showText(partner.getName() + " не сможет участвовать в размножении в качестве партнера для " + x.getName());
                 }
             } catch (Exception e) {
-                Utils.showText(x.getName() + " что-то не так с размножением....");
                 throw new ReproductionException(x.getName());
             } finally {
-                Utils.showText(x.getName() + " разблокирован после размножения");
-                x.unlock();
+                release(x);
+            }
+        }
+    }
+
+    /**
+     * Размножение растений, хранимых на клетке общим запасом (PlantStock). Как и у особей-объектов,
+     * каждое взрослое растение при наличии взрослого партнера своего вида дает от 0 до offspringCount потомков,
+     * потомки сверх maxNumberIndividualsInCell погибают. Вызывается один раз за такт для каждой клетки
+     *
+     * @param cell
+     */
+    public void growPlants(Cell cell) {
+        synchronized (cell) {
+            var random = cell.getRandom();
+            for (int speciesId = 0; speciesId < prototypes.length; speciesId++) {
+                if (!cell.isPlantStock(speciesId)) {
+                    continue;
+                }
+                PlantStock stock = cell.getPlantStock(speciesId);
+                if (stock == null) {
+                    continue;
+                }
+                AbstractIslandOrganism prototype = prototypes[speciesId];
+                int adults = stock.countAtLeast(prototype.getMinimumReproductiveAge());
+                if (adults < 2) {
+                    continue;
+                }
+                int room = prototype.getMaxNumberIndividualsInCell() - stock.getCount();
+                int born = 0;
+                //  Как только клетка заполнена, остальные потомки все равно погибнут: дальше не разыгрываем
+                for (int i = 0; i < adults && born < room; i++) {
+                    born += random.nextInt(prototype.getOffspringCount() + 1);
+                }
+                cell.addPlantOffspring(speciesId, born);
+            }
+        }
+    }
+
+    /**
+     * Размножение особи в колоночном представлении мира (особь - индекс index вида species на клетке cell).
+     * Особь, достигшая возраста размножения, при наличии на клетке взрослого партнера своего вида
+     * приносит от 0 до offspringCount потомков. Потомки сверх maxNumberIndividualsInCell погибают.
+     *
+     * @param table
+     * @param cell
+     * @param species
+     * @param index
+     */
+    public void reproduce(SpeciesTable table, ColumnarCell cell, int species, int index) {
+        int minimumReproductiveAge = table.getMinimumReproductiveAge(species);
+        if (!cell.isAlive(species, index) || cell.getAge(species, index) < minimumReproductiveAge) {
+            return;
+        }
+        //  Ищем партнера для размножения: живую взрослую особь данного вида
+        boolean hasPartner = false;
+        for (int i = 0, size = cell.size(species); i < size; i++) {
+            if (i != index && cell.isAlive(species, i) && cell.getAge(species, i) >= minimumReproductiveAge) {
+                hasPartner = true;
+                break;
             }
-        } else {
-            Utils.showText(x.getName() + " уже кем-то заблокирован для каких-то дел");
+        }
+        if (!hasPartner) {
+            return;
+        }
+        //  Число детенышей (от 0 до OFFSPRING_COUNT)
+        int offspringCount = ThreadLocalRandom.current().nextInt(table.getOffspringCount(species) + 1);
+        //  Не допускаем, чтобы общее число особей данного вида на клетке превысило MAX_NUMBER_INDIVIDUALS_IN_CELL
+        offspringCount = Math.min(offspringCount, table.getMaxNumberIndividualsInCell(species) - cell.size(species));
+        float satiation = (float) (table.getFoodRequirement(species) * 0.75);
+        for (int i = 0; i < offspringCount; i++) {
+            cell.add(species, 0, satiation);
         }
     }
 
     @Override
     public void accept(AbstractIslandOrganism organism) {
+        Cell cell = organism.getCurrentCell();
+        var event = beginInvocation();
         reproductionTask(organism);
+        commitInvocation(event, organism, cell);
     }
 }
@@ -0,0 +1,42 @@
+package com.project.andrew.metrics;
+
+/**
+ * Виды событий, которые учитываются по видам организмов в каждом такте
+ */
+public enum MetricType {
+    /**
+     * Родившиеся (поместившиеся на клетке) потомки
+     */
+    BIRTHS("births"),
+    /**
+     * Съеденные особи (по виду жертвы)
+     */
+    KILLS("kills"),
+    /**
+     * Умершие от голода, в том числе от истощения в пути
+     */
+    STARVATIONS("starvations"),
+    /**
+     * Умершие от старости
+     */
+    OLD_AGE_DEATHS("oldAgeDeaths"),
+    /**
+     * Погибшие из-за нехватки места на клетке назначения
+     */
+    OVERCROWDING_DEATHS("overcrowdingDeaths"),
+    /**
+     * Перемещения на другую клетку
+     */
+    MOVES("moves");
+
+    //  Имя столбца (поля) при выгрузке
+    private final String key;
+
+    MetricType(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,145 @@
+package com.project.andrew.metrics;
+
+import com.project.andrew.StepScheduler;
+import com.project.andrew.interfaces.SimulationStatistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+/**
+ * Запись метрик каждого такта в файл: строка CSV или объект JSON (по строке на такт, если имя файла оканчивается на .json).
+ * В строке: номер такта, численность, занятая куча, длительность фаз, сорванные из-за занятых особей действия
+ * по сервисам и события по видам за такт (MetricType)
+ */
+public class MetricsRecorder implements AutoCloseable {
+    private final BufferedWriter out;
+    private final boolean json;
+    private final String[] speciesNames;
+    private final SimulationMetrics metrics;
+    private final SimulationStatistics statistics;
+    //  Число сорванных действий по фазам (накопительно, индекс - StepScheduler.Phase.ordinal())
+    private final ToLongFunction<StepScheduler.Phase> droppedActions;
+    //  Значения накопительных показателей на конец предыдущего такта
+    private final long[] lastPhaseNanos = new long[StepScheduler.Phase.values().length];
+    private final long[] lastDroppedActions = new long[StepScheduler.Phase.values().length];
+    private final StringBuilder line = new StringBuilder(1024);
+
+    /**
+     * @param file           файл метрик (.json - JSON по строке на такт, иначе CSV)
+     * @param speciesNames   имена видов (индекс - номер вида)
+     * @param metrics        счетчики событий
+     * @param statistics     статистика планировщика такта
+     * @param droppedActions число сорванных действий по фазе (накопительно)
+     * @throws IOException
+     */
+    public MetricsRecorder(Path file, String[] speciesNames, SimulationMetrics metrics, SimulationStatistics statistics,
+                           ToLongFunction<StepScheduler.Phase> droppedActions) throws IOException {
+        this.out = Files.newBufferedWriter(file);
+        this.json = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+        this.speciesNames = speciesNames;
+        this.metrics = metrics;
+        this.statistics = statistics;
+        this.droppedActions = droppedActions;
+        //  События до первого такта (заполнение поля) не относятся ни к одному такту
+        metrics.drain();
+        if (!json) {
+            writeCsvHeader();
+        }
+    }
+
+    private void writeCsvHeader() throws IOException {
+        line.setLength(0);
+        line.append("step,organisms,heapBytes");
+        for (StepScheduler.Phase phase : StepScheduler.Phase.values()) {
+            line.append(',').append(phase.name().toLowerCase(Locale.ROOT)).append("Millis");
+        }
+        for (StepScheduler.Phase phase : StepScheduler.Phase.values()) {
+            if (phase != StepScheduler.Phase.UPDATE) {
+                line.append(',').append(phase.name().toLowerCase(Locale.ROOT)).append("FailedLocks");
+            }
+        }
+        for (MetricType type : MetricType.values()) {
+            for (String name : speciesNames) {
+                line.append(',').append(type.getKey()).append('_').append(name);
+            }
+        }
+        out.append(line).append('\n');
+    }
+
+    /**
+     * Записывает метрики завершившегося такта
+     *
+     * @param step
+     * @param organismCount
+     * @throws IOException
+     */
+    public void recordStep(long step, long organismCount) throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        long heapBytes = runtime.totalMemory() - runtime.freeMemory();
+        long[][] events = metrics.drain();
+        StepScheduler.Phase[] phases = StepScheduler.Phase.values();
+        double[] phaseMillis = new double[phases.length];
+        long[] failedLocks = new long[phases.length];
+        for (StepScheduler.Phase phase : phases) {
+            int i = phase.ordinal();
+            long nanos = statistics.getPhaseNanos(phase);
+            phaseMillis[i] = (nanos - lastPhaseNanos[i]) / 1e6;
+            lastPhaseNanos[i] = nanos;
+            long dropped = droppedActions.applyAsLong(phase);
+            failedLocks[i] = dropped - lastDroppedActions[i];
+            lastDroppedActions[i] = dropped;
+        }
+
+        line.setLength(0);
+        if (json) {
+            line.append("{\"step\":").append(step)
+                    .append(",\"organisms\":").append(organismCount)
+                    .append(",\"heapBytes\":").append(heapBytes)
+                    .append(",\"phaseMillis\":{");
+            for (StepScheduler.Phase phase : phases) {
+                line.append(phase.ordinal() == 0 ? "" : ",").append('"').append(phase.name()).append("\":")
+                        .append(String.format(Locale.ROOT, "%.3f", phaseMillis[phase.ordinal()]));
+            }
+            line.append("},\"failedLocks\":{");
+            for (StepScheduler.Phase phase : phases) {
+                if (phase != StepScheduler.Phase.UPDATE) {
+                    line.append(phase.ordinal() == 0 ? "" : ",").append('"').append(phase.name()).append("\":").append(failedLocks[phase.ordinal()]);
+                }
+            }
+            line.append("},\"species\":{");
+            for (int s = 0; s < speciesNames.length; s++) {
+                line.append(s == 0 ? "" : ",").append('"').append(speciesNames[s]).append("\":{");
+                for (MetricType type : MetricType.values()) {
+                    line.append(type.ordinal() == 0 ? "" : ",").append('"').append(type.getKey()).append("\":").append(events[type.ordinal()][s]);
+                }
+                line.append('}');
+            }
+            line.append("}}");
+        } else {
+            line.append(step).append(',').append(organismCount).append(',').append(heapBytes);
+            for (StepScheduler.Phase phase : phases) {
+                line.append(',').append(String.format(Locale.ROOT, "%.3f", phaseMillis[phase.ordinal()]));
+            }
+            for (StepScheduler.Phase phase : phases) {
+                if (phase != StepScheduler.Phase.UPDATE) {
+                    line.append(',').append(failedLocks[phase.ordinal()]);
+                }
+            }
+            for (MetricType type : MetricType.values()) {
+                for (int s = 0; s < speciesNames.length; s++) {
+                    line.append(',').append(events[type.ordinal()][s]);
+                }
+            }
+        }
+        out.append(line).append('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
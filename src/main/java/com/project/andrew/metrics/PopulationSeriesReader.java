@@ -0,0 +1,197 @@
+package com.project.andrew.metrics;
+
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Чтение временного ряда численности, записанного PopulationSeriesWriter: кадр за кадром (по такту).
+ * Недописанный последний блок (прогон прерван во время записи) считается концом файла.
+ * Если ряд дописывался после продолжения с контрольной точки, такты могут повторяться: актуален последний кадр такта
+ */
+public class PopulationSeriesReader implements AutoCloseable {
+    private final FileChannel channel;
+    @Getter
+    private final int rowCount;
+    @Getter
+    private final int colCount;
+    //  Имена видов (индекс - номер вида)
+    @Getter
+    private final String[] speciesNames;
+    //  Записана ли численность по клеткам
+    @Getter
+    private final boolean density;
+    //  Смещение следующего блока в файле
+    private long position;
+    //  Текущий блок
+    private int blockSteps = 0;
+    private int blockIndex = 0;
+    private int[] steps = new int[0];
+    private long[] totals = new long[0];
+    private int[] cells = new int[0];
+
+    /**
+     * Кадр ряда: численность после такта
+     *
+     * @param step     номер такта (0 - начальное состояние)
+     * @param totals   число особей по видам (индекс - номер вида)
+     * @param colCount
+     * @param cells    число особей: индекс ((row * colCount + col) * speciesCount + speciesId); null, если ряд без клеток
+     */
+    public record Frame(int step, long[] totals, int colCount, int[] cells) {
+
+        /**
+         * Возвращает число особей вида на клетке
+         *
+         * @param row
+         * @param col
+         * @param speciesId
+         * @return
+         */
+        public int getCount(int row, int col, int speciesId) {
+            return cells[(row * colCount + col) * totals.length + speciesId];
+        }
+    }
+
+    public PopulationSeriesReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer prefix = ByteBuffer.allocate(12);
+            if (!readFully(prefix, 0) || prefix.getInt(0) != PopulationSeriesWriter.MAGIC) {
+                throw new IOException("Файл не является временным рядом численности: " + file);
+            }
+            int version = prefix.getInt(4);
+            if (version != PopulationSeriesWriter.VERSION) {
+                throw new IOException("Неподдерживаемая версия временного ряда: " + version);
+            }
+            ByteBuffer header = ByteBuffer.allocate(prefix.getInt(8));
+            if (!readFully(header, prefix.capacity())) {
+                throw new IOException("Заголовок временного ряда поврежден: " + file);
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(header.array()));
+            rowCount = in.readInt();
+            colCount = in.readInt();
+            density = in.readBoolean();
+            speciesNames = new String[in.readInt()];
+            for (int s = 0; s < speciesNames.length; s++) {
+                speciesNames[s] = in.readUTF();
+            }
+            position = prefix.capacity() + header.capacity();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает следующий кадр или null, если кадров больше нет
+     *
+     * @return
+     * @throws IOException
+     */
+    public Frame next() throws IOException {
+        if (blockIndex == blockSteps && !readBlock()) {
+            return null;
+        }
+        int speciesCount = speciesNames.length;
+        int k = blockIndex++;
+        long[] frameTotals = new long[speciesCount];
+        int[] frameCells = null;
+        int cellCount = rowCount * colCount;
+        if (density) {
+            frameCells = new int[cellCount * speciesCount];
+        }
+        //  В блоке данные лежат по столбцам (вид, затем такт): собираем строку кадра
+        for (int s = 0; s < speciesCount; s++) {
+            frameTotals[s] = totals[s * blockSteps + k];
+            if (density) {
+                int offset = (s * blockSteps + k) * cellCount;
+                for (int c = 0; c < cellCount; c++) {
+                    frameCells[c * speciesCount + s] = cells[offset + c];
+                }
+            }
+        }
+        return new Frame(steps[k], frameTotals, colCount, frameCells);
+    }
+
+    /**
+     * Возвращает смещение конца последнего целого блока (для дозаписи в файл)
+     *
+     * @return
+     * @throws IOException
+     */
+    long findEnd() throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (readFully(length.clear(), position)) {
+            long next = position + length.capacity() + length.getInt(0);
+            if (next > channel.size()) {
+                break;
+            }
+            position = next;
+        }
+        return position;
+    }
+
+    /**
+     * Читает следующий блок
+     *
+     * @return false, если целых блоков больше нет
+     * @throws IOException
+     */
+    private boolean readBlock() throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        if (!readFully(length, position)) {
+            return false;
+        }
+        ByteBuffer block = ByteBuffer.allocate(length.getInt(0));
+        if (!readFully(block, position + length.capacity())) {
+            return false;
+        }
+        position += length.capacity() + block.capacity();
+        block.flip();
+        int n = block.getInt();
+        int speciesCount = speciesNames.length;
+        steps = new int[n];
+        block.asIntBuffer().get(steps);
+        block.position(block.position() + n * Integer.BYTES);
+        totals = new long[speciesCount * n];
+        block.asLongBuffer().get(totals);
+        block.position(block.position() + totals.length * Long.BYTES);
+        if (density) {
+            cells = new int[speciesCount * n * rowCount * colCount];
+            block.asIntBuffer().get(cells);
+        }
+        blockSteps = n;
+        blockIndex = 0;
+        return n > 0 || readBlock();
+    }
+
+    /**
+     * Читает буфер целиком начиная со смещения
+     *
+     * @param buffer
+     * @param offset
+     * @return false, если файл закончился раньше
+     * @throws IOException
+     */
+    private boolean readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,263 @@
+package com.project.andrew.metrics;
+
+import com.project.andrew.FieldSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Запись временного ряда численности в двоичный файл только дозаписью, без текстового форматирования.
+ * Кадры (численность по видам после такта и, по желанию, по клеткам) копятся в блок из нескольких тактов,
+ * блок пишется по столбцам: номера тактов, затем численность каждого вида по тактам, затем клетки каждого вида по тактам.
+ * Запись идет в отдельном потоке; симуляция ждет, только если очередь кадров заполнена (кадры не теряются).
+ * <p>
+ * Формат: MAGIC, VERSION, длина заголовка, заголовок (rowCount, colCount, есть ли клетки, число видов, имена видов),
+ * затем блоки: длина блока, число тактов n, int[n] тактов, long[вид][n] численности, int[вид][n][клетка] численности по клеткам.
+ * При продолжении прогона с контрольной точки ряд дописывается в конец имеющегося файла (недописанный последний блок
+ * отбрасывается), новый прогон записывает файл заново.
+ * Численность по клеткам записывается только для полей, у которых кадр не больше MAX_DENSITY_FRAME_BYTES
+ */
+public class PopulationSeriesWriter implements AutoCloseable {
+    //  Сигнатура файла "ISPS"
+    static final int MAGIC = 0x49535053;
+    static final int VERSION = 1;
+    //  Максимальное число тактов в блоке
+    private static final int MAX_BLOCK_STEPS = 64;
+    //  Примерный предельный размер блока с численностью по клеткам (байт)
+    private static final int MAX_BLOCK_BYTES = 1 << 22;
+    //  Предельный размер кадра численности по клеткам (байт): кадр хранится целиком в памяти и в блоке
+    static final long MAX_DENSITY_FRAME_BYTES = 1L << 26;
+    //  Число кадров, ожидающих записи
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * Кадр, ожидающий записи
+     */
+    private record Pending(int step, long[] totals, FieldSnapshot snapshot) {
+    }
+
+    //  Признак конца ряда в очереди
+    private static final Pending END = new Pending(-1, null, null);
+
+    private final FileChannel channel;
+    private final int speciesCount;
+    private final int cellCount;
+    private final boolean density;
+    //  Число тактов в блоке
+    private final int blockSteps;
+    private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    //  Ошибка записи в потоке записи (кадры после нее отбрасываются)
+    private volatile IOException failure;
+
+    //  Текущий блок (изменяется только потоком записи)
+    private final int[] steps;
+    private final long[] totals;
+    private final int[] cells;
+    private int size = 0;
+    private final ByteBuffer buffer;
+
+    /**
+     * @param file         файл ряда
+     * @param speciesNames имена видов (индекс - номер вида)
+     * @param rowCount
+     * @param colCount
+     * @param density      записывать ли численность по клеткам
+     * @param append       дописывать ли ряд в имеющийся файл (продолжение прогона, заголовок должен совпадать);
+     *                     false - прежнее содержимое файла теряется
+     * @throws IOException
+     */
+    public PopulationSeriesWriter(Path file, String[] speciesNames, int rowCount, int colCount, boolean density, boolean append) throws IOException {
+        this.speciesCount = speciesNames.length;
+        long frameBytes = (long) rowCount * colCount * speciesCount * Integer.BYTES;
+        if (density && frameBytes > MAX_DENSITY_FRAME_BYTES) {
+            throw new IllegalArgumentException("Численность по клеткам поля " + rowCount + "x" + colCount + " (" + frameBytes
+                    + " байт на такт) не записывается во временной ряд: предел " + MAX_DENSITY_FRAME_BYTES + " байт");
+        }
+        this.cellCount = Math.toIntExact((long) rowCount * colCount);
+        this.density = density;
+        this.blockSteps = density
+                ? Math.max(1, Math.min(MAX_BLOCK_STEPS, MAX_BLOCK_BYTES / (cellCount * speciesCount * Integer.BYTES)))
+                : MAX_BLOCK_STEPS;
+        this.steps = new int[blockSteps];
+        this.totals = new long[speciesCount * blockSteps];
+        this.cells = density ? new int[speciesCount * blockSteps * cellCount] : null;
+        this.buffer = ByteBuffer.allocate(2 * Integer.BYTES + blockSteps * Integer.BYTES
+                + totals.length * Long.BYTES + (density ? cells.length * Integer.BYTES : 0));
+
+        byte[] header = header(speciesNames, rowCount, colCount, density);
+        if (append && Files.exists(file) && Files.size(file) > 0) {
+            long end;
+            try (PopulationSeriesReader reader = new PopulationSeriesReader(file)) {
+                if (reader.getRowCount() != rowCount || reader.getColCount() != colCount || reader.isDensity() != density
+                        || !Arrays.equals(reader.getSpeciesNames(), speciesNames)) {
+                    throw new IOException("Временной ряд " + file + " записан для другого поля или других видов");
+                }
+                end = reader.findEnd();
+            }
+            channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.truncate(end);
+            channel.position(end);
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer prefix = ByteBuffer.allocate(3 * Integer.BYTES + header.length);
+            prefix.putInt(MAGIC).putInt(VERSION).putInt(header.length).put(header).flip();
+            writeFully(prefix);
+        }
+        thread = new Thread(this::writeLoop, "series-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static byte[] header(String[] speciesNames, int rowCount, int colCount, boolean density) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(rowCount);
+            out.writeInt(colCount);
+            out.writeBoolean(density);
+            out.writeInt(speciesNames.length);
+            for (String name : speciesNames) {
+                out.writeUTF(name);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Передает кадр на запись (ждет, только если очередь заполнена)
+     *
+     * @param step     номер такта
+     * @param totals   число особей по видам (массив передается во владение записи)
+     * @param snapshot численность по клеткам (обязательна, если ряд с клетками, иначе не используется)
+     * @throws IOException          если запись уже завершилась ошибкой
+     * @throws InterruptedException
+     */
+    public void append(int step, long[] totals, FieldSnapshot snapshot) throws IOException, InterruptedException {
+        if (failure != null) {
+            throw new IOException("Ошибка записи временного ряда", failure);
+        }
+        if (density && snapshot == null) {
+            throw new IllegalArgumentException("Для ряда с клетками нужен снимок численности по клеткам");
+        }
+        queue.put(new Pending(step, totals, density ? snapshot : null));
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Pending pending = queue.take();
+                if (pending == END) {
+                    break;
+                }
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    add(pending);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                flushBlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Раскладывает кадр по столбцам блока, записывает блок, если он заполнен
+     *
+     * @param pending
+     * @throws IOException
+     */
+    private void add(Pending pending) throws IOException {
+        int k = size++;
+        steps[k] = pending.step();
+        for (int s = 0; s < speciesCount; s++) {
+            totals[s * blockSteps + k] = pending.totals()[s];
+        }
+        if (density) {
+            for (int s = 0; s < speciesCount; s++) {
+                pending.snapshot().copySpeciesCounts(s, cells, (s * blockSteps + k) * cellCount);
+            }
+        }
+        if (size == blockSteps) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Записывает накопленные такты одним блоком
+     *
+     * @throws IOException
+     */
+    private void flushBlock() throws IOException {
+        if (size == 0) {
+            return;
+        }
+        int n = size;
+        int length = Integer.BYTES + n * Integer.BYTES + speciesCount * n * Long.BYTES
+                + (density ? speciesCount * n * cellCount * Integer.BYTES : 0);
+        buffer.clear();
+        buffer.putInt(length).putInt(n);
+        buffer.asIntBuffer().put(steps, 0, n);
+        buffer.position(buffer.position() + n * Integer.BYTES);
+        for (int s = 0; s < speciesCount; s++) {
+            buffer.asLongBuffer().put(totals, s * blockSteps, n);
+            buffer.position(buffer.position() + n * Long.BYTES);
+        }
+        if (density) {
+            for (int s = 0; s < speciesCount; s++) {
+                buffer.asIntBuffer().put(cells, s * blockSteps * cellCount, n * cellCount);
+                buffer.position(buffer.position() + n * cellCount * Integer.BYTES);
+            }
+        }
+        buffer.flip();
+        writeFully(buffer);
+        size = 0;
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    /**
+     * Записывает оставшиеся кадры и закрывает файл.
+     * Если ожидание прервано, поток записи останавливается без записи оставшихся кадров,
+     * признак прерывания сохраняется
+     *
+     * @throws IOException если запись завершилась ошибкой или была прервана (InterruptedIOException)
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            thread.interrupt();
+            channel.close();
+            throw new InterruptedIOException("Запись временного ряда прервана, последние кадры не записаны");
+        }
+        channel.close();
+        if (failure != null) {
+            throw new IOException("Ошибка записи временного ряда", failure);
+        }
+    }
+}
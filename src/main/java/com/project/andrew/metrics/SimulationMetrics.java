@@ -0,0 +1,58 @@
+package com.project.andrew.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики событий по видам организмов. Клетки и особи увеличивают их из любых потоков,
+ * MetricsRecorder в конце такта забирает накопленные значения и обнуляет счетчики
+ */
+public class SimulationMetrics {
+    //  Счетчики: [MetricType.ordinal()][номер вида]
+    private final LongAdder[][] counters;
+
+    public SimulationMetrics(int speciesCount) {
+        counters = new LongAdder[MetricType.values().length][speciesCount];
+        for (LongAdder[] row : counters) {
+            for (int i = 0; i < speciesCount; i++) {
+                row[i] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Учитывает одно событие
+     *
+     * @param type
+     * @param speciesId
+     */
+    public void record(MetricType type, int speciesId) {
+        counters[type.ordinal()][speciesId].increment();
+    }
+
+    /**
+     * Учитывает count событий
+     *
+     * @param type
+     * @param speciesId
+     * @param count
+     */
+    public void record(MetricType type, int speciesId, int count) {
+        counters[type.ordinal()][speciesId].add(count);
+    }
+
+    /**
+     * Возвращает накопленные значения и обнуляет счетчики (вызывать между тактами)
+     *
+     * @return значения [MetricType.ordinal()][номер вида]
+     */
+    public long[][] drain() {
+        long[][] values = new long[counters.length][];
+        for (int t = 0; t < counters.length; t++) {
+            values[t] = new long[counters[t].length];
+            for (int s = 0; s < counters[t].length; s++) {
+                values[t][s] = counters[t][s].sumThenReset();
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,33 @@
+package com.project.andrew.tracing;
+
+/**
+ * Причины смерти особи для события DEATH
+ */
+public enum DeathCause {
+    /**
+     * Истощение при перемещении
+     */
+    EXHAUSTED_ON_MOVE("истощение в пути"),
+    /**
+     * На клетке назначения нет места для особи ее вида
+     */
+    NO_ROOM("нет места на клетке"),
+    /**
+     * Старость (при обновлении клетки в конце такта)
+     */
+    OLD_AGE("старость"),
+    /**
+     * Голод (при обновлении клетки в конце такта)
+     */
+    HUNGER("голод");
+
+    private final String description;
+
+    DeathCause(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
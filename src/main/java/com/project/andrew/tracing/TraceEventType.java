@@ -0,0 +1,27 @@
+package com.project.andrew.tracing;
+
+/**
+ * Типы событий трассировки жизненных сервисов
+ */
+public enum TraceEventType {
+    /**
+     * Попытка охоты: хищник выбрал жертву (или не нашел ее) и поймал или упустил
+     */
+    HUNT_ATTEMPT,
+    /**
+     * Хищник съел жертву
+     */
+    KILL,
+    /**
+     * Особь принесла потомство
+     */
+    BIRTH,
+    /**
+     * Животное перешло на другую клетку
+     */
+    MOVE,
+    /**
+     * Особь умерла не от зубов хищника (см. DeathCause)
+     */
+    DEATH
+}
@@ -0,0 +1,100 @@
+package com.project.andrew.tracing;
+
+import com.project.andrew.AbstractIslandOrganism;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кольцевой буфер событий трассировки: много писателей (потоки симуляции), один читатель (TraceWriter).
+ * Ячейки создаются один раз и переиспользуются, запись события ничего не выделяет в куче.
+ * Если буфер полон, событие отбрасывается (писатель никогда не ждет читателя)
+ */
+class TraceRingBuffer {
+    /**
+     * Ячейка буфера. Поля пишет писатель, занявший номер ячейки, и затем публикует ее записью номера в published
+     */
+    static final class Slot {
+        TraceEventType type;
+        AbstractIslandOrganism actor;
+        AbstractIslandOrganism other;
+        int row;
+        int col;
+        int value1;
+        int value2;
+        //  Номер опубликованного в ячейке события (-1 - еще не было)
+        volatile long published = -1;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    //  Номер следующего события для записи
+    private final AtomicLong tail = new AtomicLong();
+    //  Номер следующего события для чтения
+    private final AtomicLong head = new AtomicLong();
+    //  Число отброшенных из-за переполнения событий
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity емкость (округляется вверх до степени двойки)
+     */
+    TraceRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Записывает событие в буфер или отбрасывает его, если буфер полон
+     */
+    void offer(TraceEventType type, AbstractIslandOrganism actor, AbstractIslandOrganism other, int row, int col, int value1, int value2) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.type = type;
+        slot.actor = actor;
+        slot.other = other;
+        slot.row = row;
+        slot.col = col;
+        slot.value1 = value1;
+        slot.value2 = value2;
+        slot.published = sequence;
+    }
+
+    /**
+     * Возвращает следующую опубликованную ячейку или null, если ее еще нет.
+     * После обработки ячейку нужно вернуть вызовом release (только поток-читатель)
+     *
+     * @return
+     */
+    Slot peek() {
+        long sequence = head.get();
+        Slot slot = slots[(int) (sequence & mask)];
+        return slot.published == sequence ? slot : null;
+    }
+
+    /**
+     * Освобождает прочитанную ячейку для писателей
+     *
+     * @param slot
+     */
+    void release(Slot slot) {
+        slot.actor = null;
+        slot.other = null;
+        head.lazySet(head.get() + 1);
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+}
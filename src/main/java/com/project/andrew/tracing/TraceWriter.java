@@ -0,0 +1,94 @@
+package com.project.andrew.tracing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Поток, который забирает события из кольцевого буфера, форматирует их и пишет в поток вывода.
+ * Форматирование и ввод-вывод не выполняются в потоках симуляции
+ */
+class TraceWriter implements Runnable {
+    //  Пауза, если в буфере нет событий
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final TraceRingBuffer buffer;
+    private final BufferedWriter out;
+    private final StringBuilder line = new StringBuilder(128);
+    private volatile boolean running = true;
+
+    TraceWriter(TraceRingBuffer buffer, Writer out) {
+        this.buffer = buffer;
+        this.out = new BufferedWriter(out, 1 << 16);
+    }
+
+    @Override
+    public void run() {
+        try {
+            boolean unflushed = false;
+            while (running) {
+                if (drain() > 0) {
+                    unflushed = true;
+                } else {
+                    if (unflushed) {
+                        out.flush();
+                        unflushed = false;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+            //  События, записанные до остановки
+            drain();
+            long dropped = buffer.getDropped();
+            if (dropped > 0) {
+                out.write("Трассировка: отброшено событий (буфер полон): " + dropped);
+                out.newLine();
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Ошибка записи трассировки: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает все опубликованные события
+     *
+     * @return число записанных событий
+     * @throws IOException
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        TraceRingBuffer.Slot slot;
+        while ((slot = buffer.peek()) != null) {
+            format(slot);
+            buffer.release(slot);
+            out.append(line).append(System.lineSeparator());
+            count++;
+        }
+        return count;
+    }
+
+    private void format(TraceRingBuffer.Slot slot) {
+        line.setLength(0);
+        line.append(slot.actor.getName()).append(" (").append(slot.row).append(',').append(slot.col).append(") ");
+        switch (slot.type) {
+            case HUNT_ATTEMPT -> {
+                if (slot.other == null) {
+                    line.append("не нашел жертву");
+                } else {
+                    line.append(slot.value1 == 1 ? "поймал " : "упустил ").append(slot.other.getName());
+                }
+            }
+            case KILL -> line.append("съел ").append(slot.other.getName());
+            case BIRTH -> line.append("воспроизвел ").append(slot.value1).append(" потомков, выжило - ").append(slot.value2);
+            case MOVE -> line.append("переместился в клетку (").append(slot.value1).append(',').append(slot.value2).append(')');
+            case DEATH -> line.append("умер: ").append(DeathCause.values()[slot.value1].getDescription());
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+}
@@ -0,0 +1,140 @@
+package com.project.andrew.tracing;
+
+import com.project.andrew.AbstractIslandOrganism;
+import com.project.andrew.Cell;
+
+import java.io.Writer;
+
+/**
+ * Трассировка событий жизненных сервисов (охота, поедание, рождение, перемещение, смерть).
+ * Выключенная трассировка стоит одну проверку флага: аргументы - уже существующие объекты и числа,
+ * строки не собираются. Включенная пишет события в заранее выделенный кольцевой буфер,
+ * а форматирует и выводит их отдельный поток (TraceWriter)
+ */
+public final class Tracer {
+    //  Емкость буфера событий по умолчанию
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static volatile boolean enabled = false;
+    private static TraceRingBuffer buffer;
+    private static TraceWriter writer;
+    private static Thread writerThread;
+
+    private Tracer() {
+    }
+
+    /**
+     * Включает трассировку с выводом в out
+     *
+     * @param out
+     * @param capacity емкость буфера событий
+     */
+    public static synchronized void start(Writer out, int capacity) {
+        if (enabled) {
+            throw new IllegalStateException("Трассировка уже включена");
+        }
+        buffer = new TraceRingBuffer(capacity);
+        writer = new TraceWriter(buffer, out);
+        writerThread = new Thread(writer, "trace-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        enabled = true;
+    }
+
+    /**
+     * Выключает трассировку и дожидается вывода уже записанных событий
+     *
+     * @throws InterruptedException
+     */
+    public static synchronized void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        writer.stop();
+        writerThread.join();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Возвращает число событий, отброшенных из-за переполнения буфера (с последнего включения)
+     *
+     * @return
+     */
+    public static synchronized long getDroppedEvents() {
+        return buffer == null ? 0 : buffer.getDropped();
+    }
+
+    /**
+     * Попытка охоты
+     *
+     * @param predator
+     * @param prey     выбранная жертва (null - жертв на клетке нет)
+     * @param caught   поймана ли жертва
+     */
+    public static void huntAttempt(AbstractIslandOrganism predator, AbstractIslandOrganism prey, boolean caught) {
+        if (enabled) {
+            Cell cell = predator.getCurrentCell();
+            buffer.offer(TraceEventType.HUNT_ATTEMPT, predator, prey, cell.getRow(), cell.getCol(), caught ? 1 : 0, 0);
+        }
+    }
+
+    /**
+     * Хищник съел жертву
+     *
+     * @param predator
+     * @param prey
+     */
+    public static void kill(AbstractIslandOrganism predator, AbstractIslandOrganism prey) {
+        if (enabled) {
+            Cell cell = predator.getCurrentCell();
+            buffer.offer(TraceEventType.KILL, predator, prey, cell.getRow(), cell.getCol(), 0, 0);
+        }
+    }
+
+    /**
+     * Рождение потомства
+     *
+     * @param parent
+     * @param born     число родившихся
+     * @param survived число выживших (поместившихся на клетке)
+     */
+    public static void birth(AbstractIslandOrganism parent, int born, int survived) {
+        if (enabled) {
+            Cell cell = parent.getCurrentCell();
+            buffer.offer(TraceEventType.BIRTH, parent, null, cell.getRow(), cell.getCol(), born, survived);
+        }
+    }
+
+    /**
+     * Перемещение животного
+     *
+     * @param animal
+     * @param fromRow
+     * @param fromCol
+     * @param toRow
+     * @param toCol
+     */
+    public static void move(AbstractIslandOrganism animal, int fromRow, int fromCol, int toRow, int toCol) {
+        if (enabled) {
+            buffer.offer(TraceEventType.MOVE, animal, null, fromRow, fromCol, toRow, toCol);
+        }
+    }
+
+    /**
+     * Смерть особи
+     *
+     * @param organism
+     * @param cause
+     * @param row      клетка, на которой (или по пути к которой) умерла особь
+     * @param col
+     */
+    public static void death(AbstractIslandOrganism organism, DeathCause cause, int row, int col) {
+        if (enabled) {
+            buffer.offer(TraceEventType.DEATH, organism, null, row, col, cause.ordinal(), 0);
+        }
+    }
+}